@@ -4,14 +4,19 @@ out vec4 FragColor;
 in vec3 Normal;
 in vec3 FragPos;
 
-uniform vec3 lightPos;
-uniform vec3 viewPos;
-uniform vec3 lightColor;
-uniform vec3 objectColor;
-
-uniform vec3 fogColor;
-uniform float fogStart;
-uniform float fogEnd;
+layout (std140) uniform FrameData {
+    mat4 view;
+    mat4 projection;
+    mat4 viewProjection;
+    vec3 viewPos;
+    float fogStart;
+    vec3 lightPos;
+    float fogEnd;
+    vec3 lightColor;
+    vec3 objectColor;
+    vec3 fogColor;
+    vec3 skyColor;
+};
 
 void main()
 {
@@ -43,12 +48,14 @@ void main()
 
     vec3 result = (ambient + diffuse + specular) * checkerColor;
 
+#ifdef FOG
     // spherical fog calculation
     float distance = length(FragPos - viewPos);
     float fogFactor = 1.0 - clamp((fogEnd - distance) / (fogEnd - fogStart), 0.0, 1.0);
     fogFactor = fogFactor * fogFactor;
 
     result = mix(result, fogColor, fogFactor);
+#endif
 
     FragColor = vec4(result, 1.0);
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+#version 330 core
+in vec3 TexCoords;
+
+out vec4 FragColor;
+
+uniform samplerCube skybox;
+
+layout (std140) uniform FrameData {
+    mat4 view;
+    mat4 projection;
+    mat4 viewProjection;
+    vec3 viewPos;
+    float fogStart;
+    vec3 lightPos;
+    float fogEnd;
+    vec3 lightColor;
+    vec3 objectColor;
+    vec3 fogColor;
+    vec3 skyColor;
+};
+
+void main()
+{
+    vec3 sky = texture(skybox, TexCoords).rgb;
+    // fade into the fog color towards the horizon so distant geometry blends into the sky
+    float height = normalize(TexCoords).y;
+    float fogFactor = 1.0 - smoothstep(0.0, 0.25, height);
+    FragColor = vec4(mix(sky, fogColor, fogFactor), 1.0);
+}
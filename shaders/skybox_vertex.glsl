@@ -0,0 +1,27 @@
+#version 330 core
+layout (location = 0) in vec3 aPos;
+
+out vec3 TexCoords;
+
+layout (std140) uniform FrameData {
+    mat4 view;
+    mat4 projection;
+    mat4 viewProjection;
+    vec3 viewPos;
+    float fogStart;
+    vec3 lightPos;
+    float fogEnd;
+    vec3 lightColor;
+    vec3 objectColor;
+    vec3 fogColor;
+    vec3 skyColor;
+};
+
+void main()
+{
+    TexCoords = aPos;
+    // drop the view translation so the cube stays centered on the camera
+    vec4 pos = projection * mat4(mat3(view)) * vec4(aPos, 1.0);
+    // w for z puts the sky on the far plane, drawn with GL_LEQUAL after the scene
+    gl_Position = pos.xyww;
+}
@@ -1,17 +1,76 @@
 #version 330 core
 layout (location = 0) in vec3 aPos;
-layout (location = 1) in vec3 aNormal;
+// location 1 is the texcoord, which this shader doesn't use
+layout (location = 2) in vec2 aNormal;
+#ifdef INSTANCING
+layout (location = 3) in mat4 instanceModel;
+#endif
+#ifdef SKINNING
+layout (location = 7) in ivec4 aBoneIds;
+layout (location = 8) in vec4 aBoneWeights;
+#endif
 
 out vec3 FragPos;
 out vec3 Normal;
 
-uniform mat4 model;
-uniform mat4 view;
-uniform mat4 projection;
+layout (std140) uniform FrameData {
+    mat4 view;
+    mat4 projection;
+    mat4 viewProjection;
+    vec3 viewPos;
+    float fogStart;
+    vec3 lightPos;
+    float fogEnd;
+    vec3 lightColor;
+    vec3 objectColor;
+    vec3 fogColor;
+    vec3 skyColor;
+};
+
+#ifndef INSTANCING
+layout (std140) uniform ObjectData {
+    mat4 model;
+    mat4 normalMatrix;
+};
+#endif
+
+#ifdef SKINNING
+#define MAX_BONES 64
+uniform mat4 bones[MAX_BONES];
+#endif
+
+// inverse of Mesh.encodeOctahedral: unfold the lower half of the octahedron and renormalize
+vec3 decodeNormal(vec2 e)
+{
+    vec3 n = vec3(e, 1.0 - abs(e.x) - abs(e.y));
+    float t = max(-n.z, 0.0);
+    n.x += n.x >= 0.0 ? -t : t;
+    n.y += n.y >= 0.0 ? -t : t;
+    return normalize(n);
+}
 
 void main()
 {
-    FragPos = vec3(model * vec4(aPos, 1.0));
-    Normal = mat3(transpose(inverse(model))) * aNormal;
-    gl_Position = projection * view * model * vec4(aPos, 1.0);
+#ifdef INSTANCING
+    mat4 model = instanceModel;
+#endif
+    vec4 localPos = vec4(aPos, 1.0);
+    vec3 localNormal = decodeNormal(aNormal);
+#ifdef SKINNING
+    mat4 skin = aBoneWeights.x * bones[aBoneIds.x]
+              + aBoneWeights.y * bones[aBoneIds.y]
+              + aBoneWeights.z * bones[aBoneIds.z]
+              + aBoneWeights.w * bones[aBoneIds.w];
+    localPos = skin * localPos;
+    localNormal = mat3(skin) * localNormal;
+#endif
+
+    vec4 worldPos = model * localPos;
+    FragPos = vec3(worldPos);
+#if defined(CPU_NORMAL_MATRIX) && !defined(INSTANCING)
+    Normal = mat3(normalMatrix) * localNormal;
+#else
+    Normal = mat3(transpose(inverse(model))) * localNormal;
+#endif
+    gl_Position = viewProjection * worldPos;
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package main;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Imports models on a worker pool and hands the CPU-side results back to the GL thread.
+ *
+ * Workers do everything that doesn't need a GL context (cache lookup, Assimp import, mesh
+ * conversion, cache writes) and publish finished models to a queue. The GL thread drains that
+ * queue with {@link #pollUpload()} under whatever time budget it can spare each frame.
+ *
+ * Whichever side takes a model out of the queue frees its meshes: the GL thread in
+ * {@link #finishUpload}, {@link #shutdown()} for models still waiting, or the worker itself if it
+ * finishes after shutdown.
+ */
+public class AssetLoader {
+    private final ForkJoinPool workers;
+    private final ConcurrentLinkedQueue<LoadedModel> uploadQueue;
+    private final AtomicInteger pendingCount;
+    private volatile boolean closed;
+
+    public AssetLoader() {
+        workers = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        uploadQueue = new ConcurrentLinkedQueue<>();
+        pendingCount = new AtomicInteger();
+    }
+
+    public void submit(File file, MeshCache meshCache, Function<File, List<MeshData>> importer) {
+        long submitTime = System.nanoTime();
+        pendingCount.incrementAndGet();
+        workers.execute(() -> {
+            List<MeshData> meshes = null;
+            try {
+                long start = System.nanoTime();
+                meshes = meshCache.load(file);
+                boolean warm = meshes != null;
+                if (!warm) {
+                    meshes = importer.apply(file);
+                    meshCache.store(file, meshes);
+                }
+                LoadedModel model = new LoadedModel(file, meshes, warm, submitTime, System.nanoTime() - start);
+                uploadQueue.add(model);
+                if (closed && uploadQueue.remove(model)) {
+                    model.free();
+                }
+            } catch (Exception e) {
+                if (meshes != null) {
+                    for (MeshData data : meshes) {
+                        data.free();
+                    }
+                }
+                System.err.println("error loading " + file.getName() + ": " + e.getMessage());
+                pendingCount.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Returns the next model waiting for upload, or null if none is ready yet. The caller must
+     * pass the model to {@link #finishUpload(LoadedModel)} once all of its meshes are on the GPU.
+     */
+    public LoadedModel pollUpload() {
+        return uploadQueue.peek();
+    }
+
+    public void finishUpload(LoadedModel model) {
+        uploadQueue.remove(model);
+        pendingCount.decrementAndGet();
+        model.free();
+    }
+
+    public boolean isIdle() {
+        return pendingCount.get() == 0;
+    }
+
+    /** Stops the workers and frees the meshes of every model that was never uploaded. */
+    public void shutdown() {
+        closed = true;
+        workers.shutdownNow();
+        LoadedModel model;
+        while ((model = uploadQueue.poll()) != null) {
+            model.free();
+        }
+    }
+
+    public static class LoadedModel {
+        private final File file;
+        private final List<MeshData> meshes;
+        private final boolean warm;
+        private final long submitTime;
+        private final long importNanos;
+        private int uploadedCount;
+
+        private LoadedModel(File file, List<MeshData> meshes, boolean warm, long submitTime, long importNanos) {
+            this.file = file;
+            this.meshes = meshes;
+            this.warm = warm;
+            this.submitTime = submitTime;
+            this.importNanos = importNanos;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public boolean hasNextMesh() {
+            return uploadedCount < meshes.size();
+        }
+
+        public MeshData nextMesh() {
+            return meshes.get(uploadedCount++);
+        }
+
+        public boolean isWarm() {
+            return warm;
+        }
+
+        public long getSubmitTime() {
+            return submitTime;
+        }
+
+        public long getImportNanos() {
+            return importNanos;
+        }
+
+        private void free() {
+            for (MeshData data : meshes) {
+                data.free();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package main;
+
+import org.joml.Matrix4fc;
+
+/**
+ * Math over many objects at once, on flat {@code float[]}s instead of one JOML object per call.
+ * Every operation works on entries {@code start} to {@code end} and uses these layouts:
+ * <ul>
+ *     <li>matrices: 16 floats per entry, column-major, as in {@link TransformStore}</li>
+ *     <li>points and box corners: 3 floats per entry</li>
+ *     <li>spheres: one array each for x, y, z and radius</li>
+ *     <li>frustum planes: 6 planes of (a, b, c, d), see {@link #frustumPlanes}</li>
+ * </ul>
+ *
+ * {@link #get()} returns the SIMD implementation when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and the plain scalar loops otherwise. Both give the
+ * same results up to float rounding.
+ */
+public abstract class BulkMath {
+    private static final BulkMath INSTANCE = create();
+
+    private static BulkMath create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new VectorBulkMath();
+            } catch (LinkageError e) {
+                System.err.println("vector API unavailable, using scalar bulk math: " + e);
+            }
+        }
+        return new ScalarBulkMath();
+    }
+
+    /** The fastest implementation this JVM supports. */
+    public static BulkMath get() {
+        return INSTANCE;
+    }
+
+    /** Short name of the implementation, for diagnostics. */
+    public abstract String getName();
+
+    /** {@code dest[i] = left * matrices[i]}, e.g. a view-projection times many model matrices. */
+    public abstract void mulMatrices(float[] left, float[] matrices, float[] dest, int start, int end);
+
+    /**
+     * Transforms boxes by their matrices and writes the world-space boxes enclosing them. The
+     * matrices must be affine.
+     */
+    public abstract void transformAabbs(float[] matrices, float[] min, float[] max,
+                                        float[] destMin, float[] destMax, int start, int end);
+
+    /**
+     * Transforms sphere centers by their matrices and scales the radii by each matrix's largest
+     * axis scale, so the spheres stay conservative under non-uniform scale.
+     */
+    public abstract void transformSpheres(float[] matrices, float[] centers, float[] radii,
+                                          float[] destX, float[] destY, float[] destZ, float[] destRadius,
+                                          int start, int end);
+
+    /** Sets {@code inside[i]} if sphere {@code i} is at least partly inside all six planes. */
+    public abstract void testSpheres(float[] planes, float[] x, float[] y, float[] z, float[] radius,
+                                     boolean[] inside, int start, int end);
+
+    /** Writes the normalized frustum planes of a view-projection matrix into {@code dest[0..23]}. */
+    public static float[] frustumPlanes(Matrix4fc m, float[] dest) {
+        // fourth row plus or minus each of the others, in JOML's plane order
+        setPlane(dest, 0, m.m03() + m.m00(), m.m13() + m.m10(), m.m23() + m.m20(), m.m33() + m.m30());
+        setPlane(dest, 1, m.m03() - m.m00(), m.m13() - m.m10(), m.m23() - m.m20(), m.m33() - m.m30());
+        setPlane(dest, 2, m.m03() + m.m01(), m.m13() + m.m11(), m.m23() + m.m21(), m.m33() + m.m31());
+        setPlane(dest, 3, m.m03() - m.m01(), m.m13() - m.m11(), m.m23() - m.m21(), m.m33() - m.m31());
+        setPlane(dest, 4, m.m03() + m.m02(), m.m13() + m.m12(), m.m23() + m.m22(), m.m33() + m.m32());
+        setPlane(dest, 5, m.m03() - m.m02(), m.m13() - m.m12(), m.m23() - m.m22(), m.m33() - m.m32());
+        return dest;
+    }
+
+    private static void setPlane(float[] dest, int plane, float a, float b, float c, float d) {
+        float invLength = 1.0f / (float) Math.sqrt(a * a + b * b + c * c);
+        dest[plane * 4] = a * invLength;
+        dest[plane * 4 + 1] = b * invLength;
+        dest[plane * 4 + 2] = c * invLength;
+        dest[plane * 4 + 3] = d * invLength;
+    }
+}
@@ -47,20 +47,31 @@ public class CameraHandler {
     }
 
     private void updateCameraVectors() {
-        Vector3f front = new Vector3f(
+        cameraFront.set(
                 (float) (Math.cos(Math.toRadians(yaw)) * Math.cos(Math.toRadians(pitch))),
                 (float) Math.sin(Math.toRadians(pitch)),
                 (float) (Math.sin(Math.toRadians(yaw)) * Math.cos(Math.toRadians(pitch)))
-        );
-        cameraFront = front.normalize();
+        ).normalize();
     }
 
     public Matrix4f getViewMatrix(Vector3f playerPosition) {
-        Vector3f cameraPos = getCameraPos(playerPosition);
-        return new Matrix4f().lookAt(
-                cameraPos,
-                new Vector3f(cameraPos).add(cameraFront),
-                cameraUp
+        return getViewMatrix(playerPosition, new Matrix4f());
+    }
+
+    /** Writes the view matrix into {@code dest} and returns it, for callers that run every frame. */
+    public Matrix4f getViewMatrix(Vector3f playerPosition, Matrix4f dest) {
+        return getViewMatrix(playerPosition, cameraFront, dest);
+    }
+
+    /** View matrix for a camera facing {@code front}, e.g. one published by another thread. */
+    public Matrix4f getViewMatrix(Vector3f playerPosition, Vector3f cameraFront, Matrix4f dest) {
+        float eyeX = playerPosition.x;
+        float eyeY = playerPosition.y + 1;
+        float eyeZ = playerPosition.z;
+        return dest.setLookAt(
+                eyeX, eyeY, eyeZ,
+                eyeX + cameraFront.x, eyeY + cameraFront.y, eyeZ + cameraFront.z,
+                cameraUp.x, cameraUp.y, cameraUp.z
         );
     }
 
@@ -73,7 +84,11 @@ public class CameraHandler {
     }
 
     public Vector3f getCameraPos(Vector3f playerPosition) {
-        return new Vector3f(playerPosition).add(0, 1, 0);
+        return getCameraPos(playerPosition, new Vector3f());
+    }
+
+    public Vector3f getCameraPos(Vector3f playerPosition, Vector3f dest) {
+        return dest.set(playerPosition).add(0, 1, 0);
     }
 
     public double getYaw() {
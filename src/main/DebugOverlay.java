@@ -5,14 +5,12 @@ import org.lwjgl.opengl.GL20;
 import java.nio.ByteBuffer;
 
 public class DebugOverlay {
-    private Player player;
     private Engine engine;
     private long lastFpsTime;
     private int fps;
     private int fpsCount;
 
-    public DebugOverlay(Player player, Engine engine) {
-        this.player = player;
+    public DebugOverlay(Engine engine) {
         this.engine = engine;
         this.lastFpsTime = System.currentTimeMillis();
     }
@@ -29,12 +27,35 @@ public class DebugOverlay {
 
         GL11.glColor3f(1, 1, 1);
 
+        // the player itself belongs to the simulation thread
+        SimulationSnapshot player = engine.getSnapshot();
         renderText("FPS: " + calculateFPS(), 10, 20);
         renderText("Position: " + player.getPosition(), 10, 40);
         renderText("Velocity: " + player.getVelocity(), 10, 60);
         renderText("Grounded: " + player.isGrounded(), 10, 80);
         renderText("Sprinting: " + player.isSprinting(), 10, 100);
         renderText("Cheat Flying: " + player.isCheatFlying(), 10, 120);
+        renderText("Triangles: " + engine.getMeshHandler().getTrianglesRendered()
+                + " / " + engine.getMeshHandler().getTrianglesFullDetail(), 10, 140);
+        renderText("Meshlets: " + engine.getMeshHandler().getMeshletsVisible()
+                + " / " + engine.getMeshHandler().getMeshletsTotal(), 10, 160);
+        renderText("Objects visible: " + engine.getMeshHandler().getVisibleCount()
+                + ", culled: " + engine.getMeshHandler().getCulledCount(), 10, 180);
+        renderText("Draw calls: " + engine.getMeshHandler().getDrawCalls()
+                + " (" + engine.getMeshHandler().getDrawCallsWithoutInstancing() + " without instancing)", 10, 200);
+        renderText("State changes: " + engine.getShaderHandler().getStateCache().getChangesIssued()
+                + " issued, " + engine.getShaderHandler().getStateCache().getChangesSkipped() + " skipped", 10, 220);
+        renderText("Simulation tick: " + player.getTick(), 10, 240);
+        TransformStore transforms = engine.getMeshHandler().getTransforms();
+        renderText("Transforms: " + transforms.getRecomputedCount() + " recomputed, "
+                + transforms.getSkippedCount() + " skipped", 10, 260);
+        DynamicAabbTree<MeshRenderer> spatialIndex = engine.getMeshHandler().getSpatialIndex();
+        renderText("Spatial index: " + spatialIndex.getProxyCount() + " objects, height "
+                + spatialIndex.getHeight(), 10, 280);
+        MeshRenderer picked = engine.getPickedRenderer();
+        renderText("Looking at: " + (picked == null ? "nothing"
+                : "object " + engine.getMeshHandler().getMeshIndex(picked)
+                + String.format(" (%.1f m)", engine.getMeshHandler().getPickDistance())), 10, 300);
 
         GL11.glEnable(GL11.GL_DEPTH_TEST);
     }
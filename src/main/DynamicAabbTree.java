@@ -0,0 +1,459 @@
+package main;
+
+import org.joml.FrustumIntersection;
+
+import java.util.Arrays;
+
+/**
+ * Bounding volume hierarchy over moving objects, for "what is near here" and "what does this ray
+ * hit" without scanning every object.
+ *
+ * Each object is a leaf holding a fat box: its bounds grown by a margin on every side, so small
+ * movements stay inside and {@link #move} only touches the tree once an object leaves its fat box.
+ * Leaves are inserted next to the sibling that grows the total surface area least, and every
+ * insert and remove walks back to the root rotating unbalanced nodes, which keeps the height
+ * logarithmic however objects are added, moved and removed.
+ *
+ * Nodes live in flat arrays and proxies are node indices, stable until {@link #remove}d. Queries
+ * allocate nothing. Not thread safe: updates and queries are for one thread at a time.
+ */
+public class DynamicAabbTree<T> {
+    private static final int NULL = -1;
+
+    /** Called for every leaf a query reaches. */
+    public interface QueryCallback {
+        /** Return false to stop the query. */
+        boolean report(int proxy);
+    }
+
+    /** Called for every leaf whose fat box the ray enters before {@code maxDistance}. */
+    public interface RayCallback {
+        /**
+         * Returns the distance to clip the ray to: the distance of an actual hit to only look for
+         * nearer ones, {@code maxDistance} to ignore this proxy, or 0 to stop.
+         */
+        float report(int proxy, float maxDistance);
+    }
+
+    private final float margin;
+
+    // minX, minY, minZ, maxX, maxY, maxZ per node
+    private float[] bounds;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] secondChildren;
+    /** Leaves are 0, free nodes -1. */
+    private int[] heights;
+    private Object[] userData;
+    private int root = NULL;
+    private int freeList = NULL;
+    private int proxyCount;
+    private int[] stack = new int[64];
+
+    /** Fat boxes are grown by {@code margin} on every side. */
+    public DynamicAabbTree(float margin) {
+        this.margin = margin;
+        allocateNodes(16);
+    }
+
+    /** Adds an object with the given bounds and returns its proxy. */
+    public int insert(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, T data) {
+        int leaf = allocateNode();
+        setBounds(leaf, minX - margin, minY - margin, minZ - margin, maxX + margin, maxY + margin, maxZ + margin);
+        userData[leaf] = data;
+        heights[leaf] = 0;
+        insertLeaf(leaf);
+        proxyCount++;
+        return leaf;
+    }
+
+    public void remove(int proxy) {
+        checkProxy(proxy);
+        removeLeaf(proxy);
+        freeNode(proxy);
+        proxyCount--;
+    }
+
+    /**
+     * Updates an object's bounds. Returns false if they still fit its fat box, in which case the
+     * tree is left alone.
+     */
+    public boolean move(int proxy, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        checkProxy(proxy);
+        int b = proxy * 6;
+        if (bounds[b] <= minX && bounds[b + 1] <= minY && bounds[b + 2] <= minZ
+                && bounds[b + 3] >= maxX && bounds[b + 4] >= maxY && bounds[b + 5] >= maxZ) {
+            return false;
+        }
+        removeLeaf(proxy);
+        setBounds(proxy, minX - margin, minY - margin, minZ - margin, maxX + margin, maxY + margin, maxZ + margin);
+        insertLeaf(proxy);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getUserData(int proxy) {
+        checkProxy(proxy);
+        return (T) userData[proxy];
+    }
+
+    /** Reports every proxy whose fat box overlaps the given box. */
+    public void queryOverlap(float minX, float minY, float minZ, float maxX, float maxY, float maxZ,
+                             QueryCallback callback) {
+        if (root == NULL) {
+            return;
+        }
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 6;
+            if (bounds[b] > maxX || bounds[b + 1] > maxY || bounds[b + 2] > maxZ
+                    || bounds[b + 3] < minX || bounds[b + 4] < minY || bounds[b + 5] < minZ) {
+                continue;
+            }
+            if (isLeaf(node)) {
+                if (!callback.report(node)) {
+                    return;
+                }
+            } else {
+                top = push(top, firstChildren[node]);
+                top = push(top, secondChildren[node]);
+            }
+        }
+    }
+
+    /**
+     * Reports every proxy whose fat box is at least partly inside the frustum. Subtrees entirely
+     * inside are reported without testing their nodes.
+     */
+    public void queryFrustum(FrustumIntersection frustum, QueryCallback callback) {
+        if (root == NULL) {
+            return;
+        }
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 6;
+            int result = frustum.intersectAab(bounds[b], bounds[b + 1], bounds[b + 2],
+                    bounds[b + 3], bounds[b + 4], bounds[b + 5]);
+            if (result == FrustumIntersection.INSIDE) {
+                if (!reportAll(node, top, callback)) {
+                    return;
+                }
+            } else if (result == FrustumIntersection.INTERSECT) {
+                if (isLeaf(node)) {
+                    if (!callback.report(node)) {
+                        return;
+                    }
+                } else {
+                    top = push(top, firstChildren[node]);
+                    top = push(top, secondChildren[node]);
+                }
+            }
+        }
+    }
+
+    /** Reports every leaf below {@code subtree}, using the stack above the caller's {@code base}. */
+    private boolean reportAll(int subtree, int base, QueryCallback callback) {
+        int top = push(base, subtree);
+        while (top > base) {
+            int node = stack[--top];
+            if (isLeaf(node)) {
+                if (!callback.report(node)) {
+                    return false;
+                }
+            } else {
+                top = push(top, firstChildren[node]);
+                top = push(top, secondChildren[node]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Casts a ray from the origin along the unit direction, reporting proxies whose fat boxes it
+     * enters within {@code maxDistance}. The callback clips the ray, so after a hit only nearer
+     * candidates are visited.
+     */
+    public void raycast(float originX, float originY, float originZ,
+                        float dirX, float dirY, float dirZ, float maxDistance, RayCallback callback) {
+        if (root == NULL) {
+            return;
+        }
+        float invX = 1.0f / dirX, invY = 1.0f / dirY, invZ = 1.0f / dirZ;
+        int top = push(0, root);
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 6;
+            float entry = rayEntry(b, originX, originY, originZ, invX, invY, invZ, maxDistance);
+            if (entry < 0) {
+                continue;
+            }
+            if (isLeaf(node)) {
+                maxDistance = callback.report(node, maxDistance);
+                if (maxDistance <= 0) {
+                    return;
+                }
+            } else {
+                top = push(top, firstChildren[node]);
+                top = push(top, secondChildren[node]);
+            }
+        }
+    }
+
+    /** Distance at which the ray enters box {@code b}, or -1 if it misses it within maxDistance. */
+    private float rayEntry(int b, float ox, float oy, float oz, float invX, float invY, float invZ, float maxDistance) {
+        float tx1 = (bounds[b] - ox) * invX, tx2 = (bounds[b + 3] - ox) * invX;
+        float ty1 = (bounds[b + 1] - oy) * invY, ty2 = (bounds[b + 4] - oy) * invY;
+        float tz1 = (bounds[b + 2] - oz) * invZ, tz2 = (bounds[b + 5] - oz) * invZ;
+        float near = Math.max(Math.max(Math.min(tx1, tx2), Math.min(ty1, ty2)), Math.max(Math.min(tz1, tz2), 0));
+        float far = Math.min(Math.min(Math.max(tx1, tx2), Math.max(ty1, ty2)), Math.min(Math.max(tz1, tz2), maxDistance));
+        return near <= far ? near : -1;
+    }
+
+    /** Number of objects in the tree. */
+    public int getProxyCount() {
+        return proxyCount;
+    }
+
+    /** Height of the tree; a balanced tree over n objects is about log2(n) high. */
+    public int getHeight() {
+        return root == NULL ? 0 : heights[root];
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parents[leaf] = NULL;
+            return;
+        }
+
+        // descend towards the sibling whose pairing with the leaf adds the least surface area
+        int index = root;
+        while (!isLeaf(index)) {
+            int child1 = firstChildren[index];
+            int child2 = secondChildren[index];
+            float area = area(index);
+            float combinedArea = combinedArea(index, leaf);
+            float cost = 2 * combinedArea;
+            // every level further down also grows this node
+            float inheritedCost = 2 * (combinedArea - area);
+            float cost1 = descendCost(child1, leaf) + inheritedCost;
+            float cost2 = descendCost(child2, leaf) + inheritedCost;
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? child1 : child2;
+        }
+
+        int sibling = index;
+        int oldParent = parents[sibling];
+        int newParent = allocateNode();
+        parents[newParent] = oldParent;
+        userData[newParent] = null;
+        setUnion(newParent, sibling, leaf);
+        heights[newParent] = heights[sibling] + 1;
+        if (oldParent != NULL) {
+            replaceChild(oldParent, sibling, newParent);
+        } else {
+            root = newParent;
+        }
+        firstChildren[newParent] = sibling;
+        secondChildren[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+
+        refit(parents[leaf]);
+    }
+
+    private float descendCost(int child, int leaf) {
+        return isLeaf(child) ? combinedArea(child, leaf) : combinedArea(child, leaf) - area(child);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int parent = parents[leaf];
+        int grandParent = parents[parent];
+        int sibling = firstChildren[parent] == leaf ? secondChildren[parent] : firstChildren[parent];
+        freeNode(parent);
+        if (grandParent != NULL) {
+            replaceChild(grandParent, parent, sibling);
+            parents[sibling] = grandParent;
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parents[sibling] = NULL;
+        }
+    }
+
+    /** Rebalances and recomputes heights and bounds from {@code index} up to the root. */
+    private void refit(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int child1 = firstChildren[index];
+            int child2 = secondChildren[index];
+            heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+            setUnion(index, child1, child2);
+            index = parents[index];
+        }
+    }
+
+    /**
+     * Rotates the taller child of {@code a} up if the children's heights differ by more than one.
+     * Returns the node now at {@code a}'s place.
+     */
+    private int balance(int a) {
+        if (isLeaf(a) || heights[a] < 2) {
+            return a;
+        }
+        int b = firstChildren[a];
+        int c = secondChildren[a];
+        int balance = heights[c] - heights[b];
+        if (balance > 1) {
+            rotateUp(a, c, b, false);
+            return c;
+        }
+        if (balance < -1) {
+            rotateUp(a, b, c, true);
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Makes {@code up}, a child of {@code a}, take {@code a}'s place with {@code a} as its first
+     * child. The taller of {@code up}'s children stays with it and the shorter moves to {@code a},
+     * next to {@code a}'s other child {@code stay}.
+     */
+    private void rotateUp(int a, int up, int stay, boolean upWasFirst) {
+        int f = firstChildren[up];
+        int g = secondChildren[up];
+
+        firstChildren[up] = a;
+        parents[up] = parents[a];
+        parents[a] = up;
+        if (parents[up] != NULL) {
+            replaceChild(parents[up], a, up);
+        } else {
+            root = up;
+        }
+
+        int keep = heights[f] > heights[g] ? f : g;
+        int give = keep == f ? g : f;
+        secondChildren[up] = keep;
+        if (upWasFirst) {
+            firstChildren[a] = give;
+        } else {
+            secondChildren[a] = give;
+        }
+        parents[give] = a;
+        setUnion(a, stay, give);
+        setUnion(up, a, keep);
+        heights[a] = 1 + Math.max(heights[stay], heights[give]);
+        heights[up] = 1 + Math.max(heights[a], heights[keep]);
+    }
+
+    private void replaceChild(int parent, int oldChild, int newChild) {
+        if (firstChildren[parent] == oldChild) {
+            firstChildren[parent] = newChild;
+        } else {
+            secondChildren[parent] = newChild;
+        }
+    }
+
+    private boolean isLeaf(int node) {
+        return firstChildren[node] == NULL;
+    }
+
+    private void checkProxy(int proxy) {
+        if (proxy < 0 || proxy >= heights.length || heights[proxy] != 0) {
+            throw new IllegalArgumentException("invalid proxy " + proxy);
+        }
+    }
+
+    /** Half the surface area, the cost the insertion heuristic minimizes. */
+    private float area(int node) {
+        int b = node * 6;
+        float dx = bounds[b + 3] - bounds[b], dy = bounds[b + 4] - bounds[b + 1], dz = bounds[b + 5] - bounds[b + 2];
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private float combinedArea(int first, int second) {
+        int a = first * 6, b = second * 6;
+        float dx = Math.max(bounds[a + 3], bounds[b + 3]) - Math.min(bounds[a], bounds[b]);
+        float dy = Math.max(bounds[a + 4], bounds[b + 4]) - Math.min(bounds[a + 1], bounds[b + 1]);
+        float dz = Math.max(bounds[a + 5], bounds[b + 5]) - Math.min(bounds[a + 2], bounds[b + 2]);
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private void setUnion(int node, int first, int second) {
+        int a = first * 6, b = second * 6;
+        setBounds(node,
+                Math.min(bounds[a], bounds[b]), Math.min(bounds[a + 1], bounds[b + 1]), Math.min(bounds[a + 2], bounds[b + 2]),
+                Math.max(bounds[a + 3], bounds[b + 3]), Math.max(bounds[a + 4], bounds[b + 4]), Math.max(bounds[a + 5], bounds[b + 5]));
+    }
+
+    private void setBounds(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int b = node * 6;
+        bounds[b] = minX;
+        bounds[b + 1] = minY;
+        bounds[b + 2] = minZ;
+        bounds[b + 3] = maxX;
+        bounds[b + 4] = maxY;
+        bounds[b + 5] = maxZ;
+    }
+
+    private int push(int top, int node) {
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = node;
+        return top + 1;
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) {
+            allocateNodes(heights.length * 2);
+        }
+        int node = freeList;
+        freeList = parents[node];
+        parents[node] = NULL;
+        firstChildren[node] = NULL;
+        secondChildren[node] = NULL;
+        heights[node] = 0;
+        return node;
+    }
+
+    /** Free nodes are chained through {@code parents}. */
+    private void freeNode(int node) {
+        parents[node] = freeList;
+        heights[node] = -1;
+        userData[node] = null;
+        freeList = node;
+    }
+
+    private void allocateNodes(int capacity) {
+        int oldCapacity = heights == null ? 0 : heights.length;
+        if (oldCapacity == 0) {
+            bounds = new float[capacity * 6];
+            parents = new int[capacity];
+            firstChildren = new int[capacity];
+            secondChildren = new int[capacity];
+            heights = new int[capacity];
+            userData = new Object[capacity];
+        } else {
+            bounds = Arrays.copyOf(bounds, capacity * 6);
+            parents = Arrays.copyOf(parents, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            secondChildren = Arrays.copyOf(secondChildren, capacity);
+            heights = Arrays.copyOf(heights, capacity);
+            userData = Arrays.copyOf(userData, capacity);
+        }
+        for (int i = capacity - 1; i >= oldCapacity; i--) {
+            freeNode(i);
+        }
+    }
+}
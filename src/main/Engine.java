@@ -42,7 +42,7 @@ public class Engine {
 
     Vector3f lightPos = new Vector3f(5.0f, 5.0f, 5.0f);
     Vector3f lightColor = new Vector3f(1.0f, 1.0f, 1.0f);
-    Vector3f objectColor = new Vector3f(0.5f, 0.5f, 0.5f);
+    Vector3f objectColor = new Vector3f(1.0f, 0.5f, 0.31f);
 
 
     Vector4f clearColor = new Vector4f(51/255f, 76/255f, 75/255f, 1.0f);
@@ -56,14 +56,37 @@ public class Engine {
     private final float DEBUG_STEP_DURATION = 0.5f;
 
     private Matrix4f projectionMatrix;
+    // per-frame scratch, so the steady-state frame loop doesn't allocate
+    private final Vector3f playerPosition = new Vector3f();
+    private final Vector3f cameraPos = new Vector3f();
+    private final Matrix4f viewMatrix = new Matrix4f();
+    private final Matrix4f cameraWorldMatrix = new Matrix4f();
+    // scene graph anchors that follow the player and the camera, for attaching models to them
+    private int playerTransform;
+    private int cameraTransform;
+    private MeshRenderer pickedRenderer;
+    private final InputQueue inputQueue = new InputQueue(INPUT_QUEUE_CAPACITY);
+    private Simulation simulation;
+    private JobSystem jobSystem;
+    private TaskGraph frameGraph;
+    private SimulationSnapshot snapshot;
 
     private float fogStart = 6.0f;
     private float fogEnd = 30.0f;
     private static BufferedImage fontImage;
     private static final int CHAR_WIDTH = 8;
     private static final int CHAR_HEIGHT = 12;
+    private static final long MESH_UPLOAD_BUDGET_NANOS = 2_000_000L;
+    private static final int DEFAULT_TICK_RATE = 120;
+    private static final int INPUT_QUEUE_CAPACITY = 64;
+    /** How far ahead picking looks for the object under the crosshair. */
+    private static final float PICK_DISTANCE = 50.0f;
+    /** When init() started; cleared once the first frame has been presented. */
+    private long startupNanos;
 
     private void init() {
+        startupNanos = System.nanoTime();
+
         // set up an error callback
         errorCallback = GLFWErrorCallback.createPrint(System.err);
         glfwSetErrorCallback(errorCallback);
@@ -116,17 +139,20 @@ public class Engine {
 
         // initialize handlers
         shaderHandler = new ShaderHandler();
+        shaderHandler.startWatching();
         player = new Player(new Vector3f(0, 1, 0));
         player.setPosition(new Vector3f(1.0f, 0, 3f));
         player.setVelocity(new Vector3f(0.1f, 0, 0.1f)); // Set a small initial velocity
 
-        debugOverlay = new DebugOverlay(player, this);
+        debugOverlay = new DebugOverlay(this);
         cameraHandler = new CameraHandler();
-        inputHandler = new InputHandler(window, player, cameraHandler);
+        inputHandler = new InputHandler(window);
+        simulation = new Simulation(player, cameraHandler, inputQueue, DEFAULT_TICK_RATE);
 
         meshHandler = new MeshHandler();
         meshHandler.loadMeshes();
         meshHandler.addGroundPlane();
+        meshHandler.setFarCullDistance(fogEnd);
 
         // Initialize projection matrix
         float aspectRatio = (float) width / height;
@@ -147,6 +173,13 @@ public class Engine {
         skybox = new Skybox(shaderHandler, skyboxTexture);
 
         updateProjectionMatrix();
+
+        TransformStore transformStore = meshHandler.getTransforms();
+        playerTransform = transformStore.create();
+        cameraTransform = transformStore.create();
+
+        jobSystem = JobSystem.createDefault();
+        buildFrameGraph();
     }
 
     private int loadCubemapTexture(String[] strings) {
@@ -154,69 +187,109 @@ public class Engine {
     }
 
     private void loop() {
-        float lastFrame = 0f;
+        // from here on the player and camera handler belong to the simulation thread
+        simulation.start();
 
         while (!glfwWindowShouldClose(window)) {
-            float currentFrame = (float) glfwGetTime();
-            float deltaTime = currentFrame - lastFrame;
-            lastFrame = currentFrame;
-
-            Vector3f wishDir = inputHandler.processInput(deltaTime, shaderHandler);
-
-            player.move(wishDir, deltaTime);
-            player.update(deltaTime);
-
-            Vector3f playerPosition = player.getPosition();
-            cameraHandler.update(playerPosition);
+            InputSample sample = inputQueue.claim();
+            if (sample != null) {
+                inputHandler.sampleInput(sample);
+                inputQueue.publish();
+            }
 
-            render();
+            frameGraph.execute();
 
             if (inputHandler.isDebugMode()) {
                 debugOverlay.render();
             }
 
             glfwSwapBuffers(window);
+            if (startupNanos != 0) {
+                logTimeToFirstFrame();
+                startupNanos = 0;
+            }
             glfwPollEvents();
         }
     }
 
-    private void render() {
-        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+    /** Startup cost is dominated by shader compilation unless the program binary cache is warm. */
+    private void logTimeToFirstFrame() {
+        ProgramBinaryCache programCache = shaderHandler.getProgramCache();
+        String cacheState = !programCache.isSupported() ? "unsupported"
+                : programCache.getMisses() == 0 ? "warm" : "cold";
+        System.out.printf("time to first frame: %.1f ms (program binary cache %s, %d loaded, %d compiled)%n",
+                (System.nanoTime() - startupNanos) / 1e6, cacheState, programCache.getHits(), programCache.getMisses());
+    }
+
+    /**
+     * Declares one frame's work. Mesh uploads, shader reloads and everything else that calls GL
+     * run on the main thread; transform updates and culling are split across the job workers and
+     * overlap with the main-thread work they don't depend on. Local transforms are independent and
+     * split across workers, world transforms follow the hierarchy and are resolved in one pass.
+     */
+    private void buildFrameGraph() {
+        frameGraph = new TaskGraph(jobSystem);
+        TaskGraph.Task uploads = frameGraph.addMainThread("mesh uploads",
+                () -> meshHandler.processUploads(MESH_UPLOAD_BUDGET_NANOS));
+        TaskGraph.Task shaders = frameGraph.addMainThread("shader reload", shaderHandler::update);
+        TaskGraph.Task camera = frameGraph.addMainThread("camera", this::updateCamera);
+        // uploads add renderers and the camera moves its anchors, so transforms wait for both
+        TransformStore transformStore = meshHandler.getTransforms();
+        TaskGraph.Task localTransforms = frameGraph.addParallel("local transforms",
+                transformStore::size, transformStore::updateLocalMatrices, uploads, camera);
+        TaskGraph.Task worldTransforms = frameGraph.add("world transforms",
+                transformStore::propagateWorldMatrices, localTransforms);
+        TaskGraph.Task prepareCulling = frameGraph.add("prepare culling",
+                () -> meshHandler.prepareFrame(viewMatrix, projectionMatrix, cameraPos), worldTransforms);
+        TaskGraph.Task spatialIndex = frameGraph.add("spatial index", meshHandler::updateSpatialIndex, worldTransforms);
+        frameGraph.add("picking", () -> pickedRenderer = meshHandler.pickMesh(cameraPos,
+                snapshot.getCameraFront(), PICK_DISTANCE), spatialIndex);
+        TaskGraph.Task culling = frameGraph.addParallel("culling",
+                meshHandler::getMeshCount, meshHandler::cullRange, prepareCulling);
+        frameGraph.addMainThread("render", this::render, shaders, culling);
+    }
+
+    /** Takes the latest simulation state and derives this frame's camera from it. */
+    private void updateCamera() {
+        snapshot = simulation.acquireSnapshot();
+        snapshot.getInterpolatedPosition(System.nanoTime(), playerPosition);
 
         // Update projection matrix (if needed)
         updateProjectionMatrix();
 
+        Matrix4f view = cameraHandler.getViewMatrix(playerPosition, snapshot.getCameraFront(), viewMatrix);
+        cameraHandler.getCameraPos(playerPosition, cameraPos);
+
+        TransformStore transformStore = meshHandler.getTransforms();
+        transformStore.setPosition(playerTransform, playerPosition.x, playerPosition.y, playerPosition.z);
+        transformStore.setLocalMatrix(cameraTransform, view.invertAffine(cameraWorldMatrix));
+
+        // everything every program needs for this frame goes out in one uniform buffer
+        FrameUniforms frameUniforms = shaderHandler.getFrameUniforms();
+        frameUniforms.setView(view);
+        frameUniforms.setViewPos(cameraPos);
+        frameUniforms.setLight(lightPos, lightColor, objectColor);
+        frameUniforms.setFog(fogColor, fogStart, fogEnd);
+        frameUniforms.setSkyColor(skyColor);
+    }
+
+    private void render() {
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+
+        // the debug overlay and mesh uploads bind state behind the cache's back
+        shaderHandler.getStateCache().invalidate();
+        shaderHandler.getStateCache().resetCounters();
+
         // Render scene objects
         shaderHandler.useShaderProgram();
-        int shaderProgram = shaderHandler.getShaderProgram();
-
-        Matrix4f view = cameraHandler.getViewMatrix(player.getPosition());
-        int viewLoc = glGetUniformLocation(shaderProgram, "view");
-        glUniformMatrix4fv(viewLoc, false, view.get(new float[16]));
-
-        // Light uniforms setup
-        Vector3f lightPos = new Vector3f(5.0f, 5.0f, 5.0f);
-        Vector3f lightColor = new Vector3f(1.0f, 1.0f, 1.0f);
-        Vector3f objectColor = new Vector3f(1.0f, 0.5f, 0.31f);
-
-        shaderHandler.setLightUniforms(
-                lightPos,
-                cameraHandler.getCameraPos(player.getPosition()),
-                lightColor,
-                objectColor
-        );
-        shaderHandler.setFogUniforms(fogColor, fogStart, fogEnd);
+        shaderHandler.getFrameUniforms().upload();
 
-        // Render meshes
-        meshHandler.renderMeshes(shaderHandler);
+        // Render meshes, culled by the graph's culling task
+        meshHandler.submitMeshes(shaderHandler);
 
         // Render skybox last
         glDepthFunc(GL_LEQUAL);
-        shaderHandler.useSkyboxShaderProgram();
-        skybox.setFogColor(fogColor);
-        skybox.setSkyColor(skyColor);
-        skybox.setFogStartEnd(fogStart, fogEnd);
-        skybox.render(cameraHandler.getViewMatrix(player.getPosition()), projectionMatrix);
+        skybox.render();
         glDepthFunc(GL_LESS);
     }
 
@@ -224,8 +297,7 @@ public class Engine {
         float aspectRatio = (float) width / height;
         projectionMatrix.identity().perspective((float) Math.toRadians(45.0f),
                 aspectRatio, 0.1f, 100.0f);
-        int projectionLoc = glGetUniformLocation(shaderHandler.getShaderProgram(), "projection");
-        glUniformMatrix4fv(projectionLoc, false, projectionMatrix.get(new float[16]));
+        shaderHandler.getFrameUniforms().setProjection(projectionMatrix);
     }
 
     public void run() {
@@ -233,6 +305,19 @@ public class Engine {
             init();
             loop();
         } finally {
+            if (simulation != null) {
+                simulation.stop();
+            }
+            if (jobSystem != null) {
+                jobSystem.shutdown();
+            }
+            if (meshHandler != null) {
+                meshHandler.cleanUp();
+            }
+            if (shaderHandler != null) {
+                shaderHandler.cleanUp();
+            }
+
             // destroy the window
             glfwFreeCallbacks(window);
             glfwDestroyWindow(window);
@@ -308,6 +393,39 @@ public class Engine {
         return buffer;
     }
 
+    public MeshHandler getMeshHandler() {
+        return meshHandler;
+    }
+
+    public ShaderHandler getShaderHandler() {
+        return shaderHandler;
+    }
+
+    /** Sets how many simulation ticks run per second, independently of the render rate. */
+    public void setTickRate(int ticksPerSecond) {
+        simulation.setTickRate(ticksPerSecond);
+    }
+
+    /** Simulation state the current frame is rendered from. */
+    public SimulationSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** Scene graph transform that follows the player; parent models to it to carry them along. */
+    public int getPlayerTransform() {
+        return playerTransform;
+    }
+
+    /** Scene graph transform that follows the camera, e.g. for a held item in view space. */
+    public int getCameraTransform() {
+        return cameraTransform;
+    }
+
+    /** Object under the crosshair this frame, or null; see {@link MeshHandler#pickMesh}. */
+    public MeshRenderer getPickedRenderer() {
+        return pickedRenderer;
+    }
+
     public static void main(String[] args) {
         new Engine().run();
     }
@@ -0,0 +1,128 @@
+package main;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+
+/**
+ * Per-frame values every program reads, kept in one std140 uniform buffer bound to
+ * {@link #BINDING}. Values are staged through the setters and written to the GPU by a single
+ * mapped {@link #upload()} per frame. Shaders declare the block as
+ * <pre>
+ * layout (std140) uniform FrameData {
+ *     mat4 view;
+ *     mat4 projection;
+ *     mat4 viewProjection;
+ *     vec3 viewPos;
+ *     float fogStart;
+ *     vec3 lightPos;
+ *     float fogEnd;
+ *     vec3 lightColor;
+ *     vec3 objectColor;
+ *     vec3 fogColor;
+ *     vec3 skyColor;
+ * };
+ * </pre>
+ * std140 pads each vec3 to 16 bytes, which leaves room for the fog floats right after the first
+ * two.
+ */
+public class FrameUniforms {
+    public static final String BLOCK_NAME = "FrameData";
+    public static final int BINDING = 0;
+
+    private static final int VIEW_OFFSET = 0;
+    private static final int PROJECTION_OFFSET = 64;
+    private static final int VIEW_PROJECTION_OFFSET = 128;
+    private static final int VIEW_POS_OFFSET = 192;
+    private static final int FOG_START_OFFSET = 204;
+    private static final int LIGHT_POS_OFFSET = 208;
+    private static final int FOG_END_OFFSET = 220;
+    private static final int LIGHT_COLOR_OFFSET = 224;
+    private static final int OBJECT_COLOR_OFFSET = 240;
+    private static final int FOG_COLOR_OFFSET = 256;
+    private static final int SKY_COLOR_OFFSET = 272;
+    private static final int SIZE = 288;
+
+    private final int bufferId;
+
+    private final Matrix4f view = new Matrix4f();
+    private final Matrix4f projection = new Matrix4f();
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Vector3f viewPos = new Vector3f();
+    private final Vector3f lightPos = new Vector3f();
+    private final Vector3f lightColor = new Vector3f();
+    private final Vector3f objectColor = new Vector3f();
+    private final Vector3f fogColor = new Vector3f();
+    private final Vector3f skyColor = new Vector3f();
+    private float fogStart;
+    private float fogEnd;
+
+    public FrameUniforms() {
+        bufferId = glGenBuffers();
+        glBindBuffer(GL_UNIFORM_BUFFER, bufferId);
+        glBufferData(GL_UNIFORM_BUFFER, SIZE, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        glBindBufferBase(GL_UNIFORM_BUFFER, BINDING, bufferId);
+    }
+
+    public void setView(Matrix4f view) {
+        this.view.set(view);
+    }
+
+    public void setProjection(Matrix4f projection) {
+        this.projection.set(projection);
+    }
+
+    public void setViewPos(Vector3f viewPos) {
+        this.viewPos.set(viewPos);
+    }
+
+    public void setLight(Vector3f lightPos, Vector3f lightColor, Vector3f objectColor) {
+        this.lightPos.set(lightPos);
+        this.lightColor.set(lightColor);
+        this.objectColor.set(objectColor);
+    }
+
+    public void setFog(Vector3f fogColor, float fogStart, float fogEnd) {
+        this.fogColor.set(fogColor);
+        this.fogStart = fogStart;
+        this.fogEnd = fogEnd;
+    }
+
+    public void setSkyColor(Vector3f skyColor) {
+        this.skyColor.set(skyColor);
+    }
+
+    /** Writes everything staged so far to the uniform buffer. Call once per frame before drawing. */
+    public void upload() {
+        projection.mul(view, viewProjection);
+
+        glBindBuffer(GL_UNIFORM_BUFFER, bufferId);
+        ByteBuffer data = glMapBufferRange(GL_UNIFORM_BUFFER, 0, SIZE,
+                GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+        if (data != null) {
+            view.get(VIEW_OFFSET, data);
+            projection.get(PROJECTION_OFFSET, data);
+            viewProjection.get(VIEW_PROJECTION_OFFSET, data);
+            viewPos.get(VIEW_POS_OFFSET, data);
+            data.putFloat(FOG_START_OFFSET, fogStart);
+            lightPos.get(LIGHT_POS_OFFSET, data);
+            data.putFloat(FOG_END_OFFSET, fogEnd);
+            lightColor.get(LIGHT_COLOR_OFFSET, data);
+            objectColor.get(OBJECT_COLOR_OFFSET, data);
+            fogColor.get(FOG_COLOR_OFFSET, data);
+            skyColor.get(SKY_COLOR_OFFSET, data);
+            glUnmapBuffer(GL_UNIFORM_BUFFER);
+        }
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+    }
+
+    public void cleanUp() {
+        glDeleteBuffers(bufferId);
+    }
+}
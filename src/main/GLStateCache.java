@@ -0,0 +1,95 @@
+package main;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+
+/**
+ * Shadow copy of the GL binding state that only forwards calls which actually change
+ * something. Code that binds through here must not assume anything is unbound afterwards.
+ *
+ * Anything that still calls GL directly (the debug overlay, uploads during loading) leaves the
+ * shadow copy stale, so {@link #invalidate()} is called once per frame before the scene is
+ * drawn; the first bind of each kind after that always goes through.
+ */
+public class GLStateCache {
+    private static final int UNKNOWN = -1;
+    private static final int TEXTURE_UNITS = 16;
+
+    private int program = UNKNOWN;
+    private int vertexArray = UNKNOWN;
+    private int activeTextureUnit = UNKNOWN;
+    private final int[] textures = new int[TEXTURE_UNITS];
+
+    private int changesIssued;
+    private int changesSkipped;
+
+    public GLStateCache() {
+        Arrays.fill(textures, UNKNOWN);
+    }
+
+    public void useProgram(int program) {
+        if (this.program == program) {
+            changesSkipped++;
+            return;
+        }
+        glUseProgram(program);
+        this.program = program;
+        changesIssued++;
+    }
+
+    public void bindVertexArray(int vertexArray) {
+        if (this.vertexArray == vertexArray) {
+            changesSkipped++;
+            return;
+        }
+        glBindVertexArray(vertexArray);
+        this.vertexArray = vertexArray;
+        changesIssued++;
+    }
+
+    /**
+     * Binds a texture to a unit. Only one target per unit is tracked, which is all the engine
+     * uses; binding a different target to the same unit simply counts as a change.
+     */
+    public void bindTexture(int unit, int target, int texture) {
+        if (textures[unit] == texture) {
+            changesSkipped++;
+            return;
+        }
+        if (activeTextureUnit != unit) {
+            glActiveTexture(GL_TEXTURE0 + unit);
+            activeTextureUnit = unit;
+        }
+        glBindTexture(target, texture);
+        textures[unit] = texture;
+        changesIssued++;
+    }
+
+    /** Forgets everything, so the next bind of each kind is always issued. */
+    public void invalidate() {
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        activeTextureUnit = UNKNOWN;
+        Arrays.fill(textures, UNKNOWN);
+    }
+
+    /** Bind calls forwarded to GL since the last {@link #resetCounters()}. */
+    public int getChangesIssued() {
+        return changesIssued;
+    }
+
+    /** Bind calls dropped because the state was already set, since the last {@link #resetCounters()}. */
+    public int getChangesSkipped() {
+        return changesSkipped;
+    }
+
+    public void resetCounters() {
+        changesIssued = 0;
+        changesSkipped = 0;
+    }
+}
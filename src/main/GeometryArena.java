@@ -0,0 +1,412 @@
+package main;
+
+import org.joml.Matrix4f;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
+import static org.lwjgl.opengl.GL40.GL_DRAW_INDIRECT_BUFFER;
+import static org.lwjgl.opengl.GL42.glDrawElementsInstancedBaseVertexBaseInstance;
+import static org.lwjgl.opengl.GL43.glMultiDrawElementsIndirect;
+
+/**
+ * Shared vertex and index storage for static meshes. Every mesh placed in the arena gets a
+ * range of one large vertex buffer and one large index buffer, all behind a single VAO, so the
+ * whole static scene can be drawn without rebinding anything.
+ *
+ * Draws are recorded each frame as {@code DrawElementsIndirectCommand}s and submitted with one
+ * {@code glMultiDrawElementsIndirect} call. Each draw's model matrix is read from a per-instance
+ * attribute (locations 3-6, same as {@link Mesh#renderInstanced}) selected by the command's
+ * base instance, so draws must use the instanced shader program. Without GL 4.3 the recorded
+ * commands are issued one by one instead; without GL 4.2 (base instance) the arena is not
+ * available at all and meshes keep their own buffers.
+ *
+ * Vertices always use {@link VertexFormat#INTERLEAVED_QUANTIZED}. Indices are relative to the
+ * mesh's first vertex, so any mesh with at most 65536 vertices gets 16-bit indices, kept in their
+ * own index buffer; larger meshes go to a 32-bit one. The VAO's element buffer is switched between
+ * the two while drawing, which takes one submission per index type. Ranges freed by removed meshes
+ * are reused by later allocations; the buffers double in size when no free range is large enough.
+ */
+public class GeometryArena {
+    private static final int VERTEX_STRIDE = VertexFormat.INTERLEAVED_QUANTIZED.getBytesPerVertex();
+    private static final int INITIAL_VERTEX_CAPACITY = 1 << 18;
+    private static final int INITIAL_SHORT_INDEX_CAPACITY = 1 << 20;
+    private static final int INITIAL_INT_INDEX_CAPACITY = 1 << 18;
+    /** Ints per DrawElementsIndirectCommand: count, instanceCount, firstIndex, baseVertex, baseInstance. */
+    private static final int COMMAND_INTS = 5;
+
+    private final int vaoId;
+    private int vertexBufferId;
+    private final int matrixBufferId;
+    private final int commandBufferId;
+    private final boolean multiDrawIndirect;
+
+    private final FreeList vertexRanges;
+    private int vertexCapacity;
+    private final IndexRegion shortIndices;
+    private final IndexRegion intIndices;
+
+    private FloatBuffer matrices;
+    private int instanceCount;
+
+    public GeometryArena() {
+        multiDrawIndirect = GL.getCapabilities().OpenGL43;
+        vertexCapacity = INITIAL_VERTEX_CAPACITY;
+        vertexRanges = new FreeList(vertexCapacity);
+        matrices = MemoryUtil.memAllocFloat(16 * 64);
+
+        vaoId = glGenVertexArrays();
+        glBindVertexArray(vaoId);
+
+        vertexBufferId = createBuffer(GL_ARRAY_BUFFER, (long) vertexCapacity * VERTEX_STRIDE);
+        bindVertexAttributes();
+        intIndices = new IndexRegion(GL_UNSIGNED_INT, INITIAL_INT_INDEX_CAPACITY);
+        shortIndices = new IndexRegion(GL_UNSIGNED_SHORT, INITIAL_SHORT_INDEX_CAPACITY);
+
+        matrixBufferId = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, matrixBufferId);
+        for (int column = 0; column < 4; column++) {
+            glVertexAttribPointer(3 + column, 4, GL_FLOAT, false, 16 * 4, column * 4 * 4);
+            glEnableVertexAttribArray(3 + column);
+            glVertexAttribDivisor(3 + column, 1);
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(0);
+
+        commandBufferId = multiDrawIndirect ? glGenBuffers() : 0;
+    }
+
+    /** True if the current context can draw from an arena. Needs a current GL context. */
+    public static boolean isSupported() {
+        GLCapabilities capabilities = GL.getCapabilities();
+        return capabilities.OpenGL42;
+    }
+
+    private static int createBuffer(int target, long size) {
+        int bufferId = glGenBuffers();
+        glBindBuffer(target, bufferId);
+        glBufferData(target, size, GL_STATIC_DRAW);
+        return bufferId;
+    }
+
+    /** Points attributes 0-2 at the current vertex buffer; the VAO must be bound. */
+    private void bindVertexAttributes() {
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBufferId);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, VERTEX_STRIDE, 0);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(1, 2, GL_HALF_FLOAT, false, VERTEX_STRIDE, 12);
+        glEnableVertexAttribArray(1);
+        glVertexAttribPointer(2, 2, GL_SHORT, true, VERTEX_STRIDE, 16);
+        glEnableVertexAttribArray(2);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Copies the mesh's vertices and indices (all LOD levels) into the arena, with 16-bit indices
+     * whenever the mesh has few enough vertices.
+     */
+    public Allocation allocate(MeshData data) {
+        int vertexCount = data.getVertexCount();
+        int indexCount = data.getIndexCount();
+        IndexRegion region = vertexCount <= 0x10000 ? shortIndices : intIndices;
+
+        int vertexOffset = vertexRanges.allocate(vertexCount);
+        while (vertexOffset < 0) {
+            growVertices();
+            vertexOffset = vertexRanges.allocate(vertexCount);
+        }
+        int indexOffset = region.ranges.allocate(indexCount);
+        while (indexOffset < 0) {
+            region.grow();
+            indexOffset = region.ranges.allocate(indexCount);
+        }
+
+        ByteBuffer vertices = MemoryUtil.memAlloc(vertexCount * VERTEX_STRIDE);
+        try {
+            Mesh.writeInterleavedQuantized(data, vertices);
+            glBindBuffer(GL_ARRAY_BUFFER, vertexBufferId);
+            glBufferSubData(GL_ARRAY_BUFFER, (long) vertexOffset * VERTEX_STRIDE, vertices);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+        } finally {
+            MemoryUtil.memFree(vertices);
+        }
+
+        // the element buffer binding is VAO state, so go through the arena's VAO
+        glBindVertexArray(vaoId);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, region.bufferId);
+        if (region == shortIndices) {
+            ShortBuffer indices = Mesh.toShortIndices(data.getIndices());
+            glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, indexOffset * 2L, indices);
+            MemoryUtil.memFree(indices);
+        } else {
+            glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, indexOffset * 4L, data.getIndices());
+        }
+        glBindVertexArray(0);
+
+        return new Allocation(vertexOffset, vertexCount, indexOffset, indexCount, region.indexType);
+    }
+
+    /** Returns the allocation's ranges to the free lists. */
+    public void free(Allocation allocation) {
+        vertexRanges.free(allocation.vertexOffset(), allocation.vertexCount());
+        regionOf(allocation).ranges.free(allocation.indexOffset(), allocation.indexCount());
+    }
+
+    private IndexRegion regionOf(Allocation allocation) {
+        return allocation.indexType() == GL_UNSIGNED_SHORT ? shortIndices : intIndices;
+    }
+
+    /**
+     * Binds the arena's VAO with the allocation's index buffer as its element buffer, for drawing
+     * the allocation directly instead of through {@link #draw}.
+     */
+    public void bindIndices(Allocation allocation, GLStateCache stateCache) {
+        stateCache.bindVertexArray(vaoId);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, regionOf(allocation).bufferId);
+    }
+
+    private void growVertices() {
+        int newCapacity = vertexCapacity * 2;
+        vertexBufferId = copyToLargerBuffer(vertexBufferId, GL_ARRAY_BUFFER,
+                (long) vertexCapacity * VERTEX_STRIDE, (long) newCapacity * VERTEX_STRIDE);
+        glBindVertexArray(vaoId);
+        bindVertexAttributes();
+        glBindVertexArray(0);
+        vertexRanges.grow(vertexCapacity, newCapacity);
+        vertexCapacity = newCapacity;
+    }
+
+    private int copyToLargerBuffer(int oldBufferId, int target, long oldSize, long newSize) {
+        int newBufferId = glGenBuffers();
+        glBindVertexArray(vaoId);
+        glBindBuffer(target, newBufferId);
+        glBufferData(target, newSize, GL_STATIC_DRAW);
+        glBindBuffer(GL_COPY_READ_BUFFER, oldBufferId);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, target, 0, 0, oldSize);
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        if (target == GL_ARRAY_BUFFER) {
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+        }
+        glBindVertexArray(0);
+        glDeleteBuffers(oldBufferId);
+        return newBufferId;
+    }
+
+    /** Stores a model matrix for this frame and returns its slot, used as a draw's base instance. */
+    public int addInstance(Matrix4f modelMatrix) {
+        if ((instanceCount + 1) * 16 > matrices.capacity()) {
+            matrices = MemoryUtil.memRealloc(matrices, matrices.capacity() * 2);
+        }
+        modelMatrix.get(instanceCount * 16, matrices);
+        return instanceCount++;
+    }
+
+    /**
+     * Records a draw of {@code count} indices starting at {@code firstIndex}, relative to the
+     * allocation's own index range, using the matrix in {@code instance}.
+     */
+    public void addDraw(Allocation allocation, int firstIndex, int count, int instance) {
+        regionOf(allocation).addDraw(allocation.indexOffset() + firstIndex, count, allocation.vertexOffset(),
+                instance);
+    }
+
+    /**
+     * Submits everything recorded since the last call and starts a new frame.
+     *
+     * @return the number of GL draw calls it took
+     */
+    public int draw(GLStateCache stateCache) {
+        if (getDrawCount() == 0) {
+            instanceCount = 0;
+            return 0;
+        }
+
+        stateCache.bindVertexArray(vaoId);
+        glBindBuffer(GL_ARRAY_BUFFER, matrixBufferId);
+        glBufferData(GL_ARRAY_BUFFER, matrices.limit(instanceCount * 16), GL_STREAM_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        matrices.clear();
+
+        int drawCalls = shortIndices.draw() + intIndices.draw();
+
+        instanceCount = 0;
+        return drawCalls;
+    }
+
+    public int getVaoId() {
+        return vaoId;
+    }
+
+    /** Draws recorded since the last {@link #draw}. */
+    public int getDrawCount() {
+        return shortIndices.drawCount + intIndices.drawCount;
+    }
+
+    public boolean isMultiDrawIndirect() {
+        return multiDrawIndirect;
+    }
+
+    /** Bytes of GPU memory reserved for vertices and indices, used or not. */
+    public long getCapacityBytes() {
+        return (long) vertexCapacity * VERTEX_STRIDE + shortIndices.capacityBytes() + intIndices.capacityBytes();
+    }
+
+    public void cleanUp() {
+        MemoryUtil.memFree(matrices);
+        shortIndices.cleanUp();
+        intIndices.cleanUp();
+        glDeleteBuffers(vertexBufferId);
+        glDeleteBuffers(matrixBufferId);
+        if (commandBufferId != 0) {
+            glDeleteBuffers(commandBufferId);
+        }
+        glDeleteVertexArrays(vaoId);
+    }
+
+    /**
+     * A mesh's vertex and index ranges inside the arena, in vertices and indices. The index range
+     * is in the buffer for {@code indexType}, GL_UNSIGNED_SHORT or GL_UNSIGNED_INT.
+     */
+    public record Allocation(int vertexOffset, int vertexCount, int indexOffset, int indexCount, int indexType) {
+    }
+
+    /** The index buffer for one index type, with its free ranges and the draws recorded into it. */
+    private final class IndexRegion {
+        private final int indexType;
+        private final int indexSize;
+        private final FreeList ranges;
+        private int bufferId;
+        private int capacity;
+        private IntBuffer commands;
+        private int drawCount;
+
+        IndexRegion(int indexType, int capacity) {
+            this.indexType = indexType;
+            this.indexSize = indexType == GL_UNSIGNED_SHORT ? 2 : 4;
+            this.capacity = capacity;
+            ranges = new FreeList(capacity);
+            commands = MemoryUtil.memAllocInt(COMMAND_INTS * 64);
+            bufferId = createBuffer(GL_ELEMENT_ARRAY_BUFFER, (long) capacity * indexSize);
+        }
+
+        void grow() {
+            int newCapacity = capacity * 2;
+            bufferId = copyToLargerBuffer(bufferId, GL_ELEMENT_ARRAY_BUFFER,
+                    (long) capacity * indexSize, (long) newCapacity * indexSize);
+            ranges.grow(capacity, newCapacity);
+            capacity = newCapacity;
+        }
+
+        void addDraw(int firstIndex, int count, int baseVertex, int instance) {
+            if ((drawCount + 1) * COMMAND_INTS > commands.capacity()) {
+                commands = MemoryUtil.memRealloc(commands, commands.capacity() * 2);
+            }
+            int c = drawCount * COMMAND_INTS;
+            commands.put(c, count);
+            commands.put(c + 1, 1);
+            commands.put(c + 2, firstIndex);
+            commands.put(c + 3, baseVertex);
+            commands.put(c + 4, instance);
+            drawCount++;
+        }
+
+        /** Submits this region's draws with the arena's VAO bound and returns the GL draw calls. */
+        int draw() {
+            if (drawCount == 0) {
+                return 0;
+            }
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, bufferId);
+            int drawCalls;
+            commands.limit(drawCount * COMMAND_INTS);
+            if (multiDrawIndirect) {
+                glBindBuffer(GL_DRAW_INDIRECT_BUFFER, commandBufferId);
+                glBufferData(GL_DRAW_INDIRECT_BUFFER, commands, GL_STREAM_DRAW);
+                glMultiDrawElementsIndirect(GL_TRIANGLES, indexType, 0, drawCount, 0);
+                glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+                drawCalls = 1;
+            } else {
+                for (int d = 0; d < drawCount; d++) {
+                    int c = d * COMMAND_INTS;
+                    glDrawElementsInstancedBaseVertexBaseInstance(GL_TRIANGLES, commands.get(c), indexType,
+                            (long) commands.get(c + 2) * indexSize, commands.get(c + 1), commands.get(c + 3),
+                            commands.get(c + 4));
+                }
+                drawCalls = drawCount;
+            }
+            commands.clear();
+            drawCount = 0;
+            return drawCalls;
+        }
+
+        long capacityBytes() {
+            return (long) capacity * indexSize;
+        }
+
+        void cleanUp() {
+            MemoryUtil.memFree(commands);
+            glDeleteBuffers(bufferId);
+        }
+    }
+
+    /** First-fit free list over {@code [0, capacity)}; adjacent free ranges are merged. */
+    static final class FreeList {
+        private final TreeMap<Integer, Integer> freeRanges = new TreeMap<>();
+
+        FreeList(int capacity) {
+            freeRanges.put(0, capacity);
+        }
+
+        /** Returns the start of a free range of {@code size} elements, or -1 if none is large enough. */
+        int allocate(int size) {
+            if (size == 0) {
+                return 0;
+            }
+            for (Map.Entry<Integer, Integer> range : freeRanges.entrySet()) {
+                int offset = range.getKey();
+                int available = range.getValue();
+                if (available >= size) {
+                    freeRanges.remove(offset);
+                    if (available > size) {
+                        freeRanges.put(offset + size, available - size);
+                    }
+                    return offset;
+                }
+            }
+            return -1;
+        }
+
+        void free(int offset, int size) {
+            if (size == 0) {
+                return;
+            }
+            Map.Entry<Integer, Integer> next = freeRanges.ceilingEntry(offset);
+            if (next != null && next.getKey() == offset + size) {
+                freeRanges.remove(next.getKey());
+                size += next.getValue();
+            }
+            Map.Entry<Integer, Integer> previous = freeRanges.lowerEntry(offset);
+            if (previous != null && previous.getKey() + previous.getValue() == offset) {
+                offset = previous.getKey();
+                size += previous.getValue();
+            }
+            freeRanges.put(offset, size);
+        }
+
+        void grow(int oldCapacity, int newCapacity) {
+            free(oldCapacity, newCapacity - oldCapacity);
+        }
+    }
+}
@@ -1,20 +1,24 @@
 package main;
 
-import org.joml.Matrix3f;
-import org.joml.Vector3f;
 import static org.lwjgl.glfw.GLFW.*;
 
+/**
+ * Polls GLFW input on the main thread and turns it into {@link InputSample}s for the simulation
+ * thread. Window-level toggles (cursor capture, debug overlay) are handled here directly.
+ */
 public class InputHandler {
     private long window;
     private boolean cursorDisabled = true;
-    private Player player;
-    private CameraHandler cameraHandler;
     private boolean debugMode = false;
+    // set by callbacks during glfwPollEvents, consumed by the next sample
+    private boolean jumpPressed;
+    private boolean cheatFlyingPressed;
+    private boolean mouseMoved;
+    private double mouseX;
+    private double mouseY;
 
-    public InputHandler(long window, Player player, CameraHandler cameraHandler) {
+    public InputHandler(long window) {
         this.window = window;
-        this.player = player;
-        this.cameraHandler = cameraHandler;
         setupCallbacks();
     }
 
@@ -22,7 +26,9 @@ public class InputHandler {
         glfwSetInputMode(window, GLFW_CURSOR, GLFW_CURSOR_DISABLED);
         glfwSetCursorPosCallback(window, (window, xpos, ypos) -> {
             if (cursorDisabled) {
-                cameraHandler.processMouseMovement(xpos, ypos);
+                mouseX = xpos;
+                mouseY = ypos;
+                mouseMoved = true;
             }
         });
 
@@ -32,7 +38,10 @@ public class InputHandler {
                 glfwSetInputMode(window, GLFW_CURSOR, cursorDisabled ? GLFW_CURSOR_DISABLED : GLFW_CURSOR_NORMAL);
             }
             if (key == GLFW_KEY_SPACE && action == GLFW_PRESS) {
-                player.jump();
+                jumpPressed = true;
+            }
+            if (key == GLFW_KEY_F && action == GLFW_PRESS) {
+                cheatFlyingPressed = true;
             }
             if (key == GLFW_KEY_F3 && action == GLFW_PRESS) {
                 debugMode = !debugMode;
@@ -40,40 +49,25 @@ public class InputHandler {
         });
     }
 
-    public Vector3f processInput(float deltaTime, ShaderHandler shader) {
-        Vector3f wishDir = new Vector3f(0, 0, 0);
-
-        if (glfwGetKey(window, GLFW_KEY_W) == GLFW_PRESS) wishDir.z -= 1;
-        if (glfwGetKey(window, GLFW_KEY_S) == GLFW_PRESS) wishDir.z += 1;
-        if (glfwGetKey(window, GLFW_KEY_A) == GLFW_PRESS) wishDir.x -= 1;
-        if (glfwGetKey(window, GLFW_KEY_D) == GLFW_PRESS) wishDir.x += 1;
-
-        if (wishDir.lengthSquared() > 0) {
-            wishDir.normalize();
-        }
-
-        Vector3f forward = new Vector3f(cameraHandler.getCameraFront()).mul(1, 0, 1).normalize();
-        Vector3f right = new Vector3f(forward).cross(0, 1, 0).normalize();
-        Vector3f rotatedWishDir = new Vector3f();
-        rotatedWishDir.add(new Vector3f(forward).mul(-wishDir.z)); // Invert the z-component here
-        rotatedWishDir.add(new Vector3f(right).mul(wishDir.x));
-        wishDir.set(rotatedWishDir);
-
-        if (glfwGetKey(window, GLFW_KEY_LEFT_SHIFT) == GLFW_PRESS) {
-            player.setSprinting(true);
-        } else {
-            player.setSprinting(false);
-        }
-
-        if (glfwGetKey(window, GLFW_KEY_F) == GLFW_PRESS) {
-            player.toggleCheatFlying();
-        }
+    /** Fills {@code sample} with the current key state and whatever the callbacks saw since the last call. */
+    public void sampleInput(InputSample sample) {
+        if (glfwGetKey(window, GLFW_KEY_W) == GLFW_PRESS) sample.moveZ -= 1;
+        if (glfwGetKey(window, GLFW_KEY_S) == GLFW_PRESS) sample.moveZ += 1;
+        if (glfwGetKey(window, GLFW_KEY_A) == GLFW_PRESS) sample.moveX -= 1;
+        if (glfwGetKey(window, GLFW_KEY_D) == GLFW_PRESS) sample.moveX += 1;
 
-        if (glfwGetKey(window, GLFW_KEY_SPACE) == GLFW_PRESS) {
-            player.jump();
-        }
+        sample.sprint = glfwGetKey(window, GLFW_KEY_LEFT_SHIFT) == GLFW_PRESS;
+        // a toggle is a one-shot action: only the sample taken after the key press carries it, so
+        // holding F doesn't flip cheat flying on every frame (and every tick that drains a frame)
+        sample.toggleCheatFlying = cheatFlyingPressed;
+        cheatFlyingPressed = false;
+        sample.jump = jumpPressed || glfwGetKey(window, GLFW_KEY_SPACE) == GLFW_PRESS;
+        jumpPressed = false;
 
-        return wishDir;
+        sample.mouseMoved = mouseMoved;
+        sample.mouseX = mouseX;
+        sample.mouseY = mouseY;
+        mouseMoved = false;
     }
 
     public boolean isCursorDisabled() {
@@ -83,4 +77,4 @@ public class InputHandler {
     public boolean isDebugMode() {
         return debugMode;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer, single-consumer queue of pooled {@link InputSample}s. The producer
+ * {@link #claim()}s a slot, fills it and {@link #publish()}es it; the consumer {@link #poll()}s a
+ * slot, reads it and {@link #release()}s it. Nothing is allocated after construction.
+ */
+public class InputQueue {
+    private final InputSample[] slots;
+    private final int mask;
+    /** Next slot the consumer reads; written only by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+    /** Next slot the producer fills; written only by the producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    public InputQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        slots = new InputSample[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new InputSample();
+        }
+        mask = capacity - 1;
+    }
+
+    /** Returns a cleared slot to fill, or null if the consumer has fallen a whole queue behind. */
+    public InputSample claim() {
+        long t = tail.get();
+        if (t - head.get() == slots.length) {
+            return null;
+        }
+        InputSample sample = slots[(int) t & mask];
+        sample.clear();
+        return sample;
+    }
+
+    /** Makes the slot returned by the last {@link #claim()} visible to the consumer. */
+    public void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    /** Returns the oldest published sample, or null if there is none. */
+    public InputSample poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        return slots[(int) h & mask];
+    }
+
+    /** Gives the slot returned by the last {@link #poll()} back to the producer. */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+}
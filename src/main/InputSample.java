@@ -0,0 +1,30 @@
+package main;
+
+/**
+ * Everything the simulation needs to know about one frame of input, sampled on the main thread
+ * (GLFW only allows input polling there) and handed to the simulation thread via an
+ * {@link InputQueue}. Instances are pooled by the queue and reused.
+ */
+public class InputSample {
+    /** Raw key axes: -1, 0 or 1 for back/forward (z) and left/right (x), camera relative. */
+    float moveX;
+    float moveZ;
+    boolean sprint;
+    /** Space was pressed since the last sample, or is held; the simulation applies it once. */
+    boolean jump;
+    /** F was pressed since the last sample. Set in exactly one sample per press. */
+    boolean toggleCheatFlying;
+    /** Whether the cursor moved since the previous sample, and where to. */
+    boolean mouseMoved;
+    double mouseX;
+    double mouseY;
+
+    void clear() {
+        moveX = 0;
+        moveZ = 0;
+        sprint = false;
+        jump = false;
+        toggleCheatFlying = false;
+        mouseMoved = false;
+    }
+}
@@ -0,0 +1,60 @@
+package main;
+
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Model matrices collected during a frame for every visible copy of one mesh at one LOD, drawn
+ * together with a single instanced call. The staging buffer is kept between frames and only
+ * grows.
+ */
+public class InstanceBatch {
+    private final Mesh mesh;
+    private final int lod;
+    private FloatBuffer matrices;
+    private int count;
+
+    public InstanceBatch(Mesh mesh, int lod) {
+        this.mesh = mesh;
+        this.lod = lod;
+        this.matrices = MemoryUtil.memAllocFloat(16 * 16);
+    }
+
+    public void add(Matrix4f modelMatrix) {
+        if ((count + 1) * 16 > matrices.capacity()) {
+            matrices = MemoryUtil.memRealloc(matrices, matrices.capacity() * 2);
+        }
+        modelMatrix.get(count * 16, matrices);
+        count++;
+    }
+
+    /** Issues the instanced draw if anything was added, then empties the batch for the next frame. */
+    public int draw(GLStateCache stateCache) {
+        int drawn = count;
+        if (count > 0) {
+            matrices.position(0).limit(count * 16);
+            mesh.renderInstanced(lod, matrices, count, stateCache);
+            matrices.clear();
+            count = 0;
+        }
+        return drawn;
+    }
+
+    public Mesh getMesh() {
+        return mesh;
+    }
+
+    public int getLod() {
+        return lod;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void free() {
+        MemoryUtil.memFree(matrices);
+    }
+}
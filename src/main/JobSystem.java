@@ -0,0 +1,42 @@
+package main;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Fixed pool of worker threads for per-frame CPU work. Each worker owns a work-stealing deque
+ * (the pool is a {@link ForkJoinPool}, like the one {@link AssetLoader} imports on): work a job
+ * forks stays on its own worker's deque until an idle worker steals it, so a frame's jobs spread
+ * over all cores without a shared queue to fight over.
+ *
+ * Work is described as a {@link TaskGraph}. Workers never touch GL; graph tasks that need the
+ * context are marked main-thread and run by whoever calls {@link TaskGraph#execute()}.
+ */
+public class JobSystem {
+    private final ForkJoinPool workers;
+
+    public JobSystem(int workerCount) {
+        workers = new ForkJoinPool(workerCount, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("job-worker-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /** One worker per core, leaving a core each for the main (GL) thread and the simulation thread. */
+    public static JobSystem createDefault() {
+        return new JobSystem(Math.max(1, Runtime.getRuntime().availableProcessors() - 2));
+    }
+
+    public int getWorkerCount() {
+        return workers.getParallelism();
+    }
+
+    ForkJoinPool getPool() {
+        return workers;
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,48 @@
+package main;
+
+/**
+ * Which shader sources an object is drawn with and which optional features it actually needs.
+ * The program itself is a variant compiled on first use and cached by {@link ShaderHandler};
+ * the draw path adds the features that depend on how the object is submitted, so a material
+ * only ever pays for what it asked for.
+ */
+public class Material {
+    /** Lit and fogged, what every mesh used before materials existed. */
+    public static final Material DEFAULT = new Material("vertex.glsl", "fragment.glsl", ShaderFeature.FOG);
+
+    private final String vertexFile;
+    private final String fragmentFile;
+    private final int features;
+    // resolved once; the programs survive shader reloads, so the draw path never looks them up again
+    private ShaderProgram program;
+    private ShaderProgram instancedProgram;
+
+    public Material(String vertexFile, String fragmentFile, ShaderFeature... features) {
+        this.vertexFile = vertexFile;
+        this.fragmentFile = fragmentFile;
+        this.features = ShaderFeature.mask(features);
+    }
+
+    /**
+     * Variant for objects drawn one at a time. Their normal matrix is computed once on the CPU
+     * and read from ObjectData, which is cheaper than inverting the model matrix per vertex.
+     */
+    public ShaderProgram getProgram(ShaderHandler shaderHandler) {
+        if (program == null) {
+            program = shaderHandler.getVariant(vertexFile, fragmentFile, features | ShaderFeature.CPU_NORMAL_MATRIX.bit());
+        }
+        return program;
+    }
+
+    /** Variant for instanced and geometry arena draws, which take the model matrix per instance. */
+    public ShaderProgram getInstancedProgram(ShaderHandler shaderHandler) {
+        if (instancedProgram == null) {
+            instancedProgram = shaderHandler.getVariant(vertexFile, fragmentFile, features | ShaderFeature.INSTANCING.bit());
+        }
+        return instancedProgram;
+    }
+
+    public int getFeatures() {
+        return features;
+    }
+}
@@ -1,102 +1,463 @@
 package main;
 
+import org.joml.FrustumIntersection;
+import org.joml.Vector3f;
+import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryUtil;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL14.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.opengl.GL33.*;
 
 public class Mesh {
     private final int vaoId;
     private final List<Integer> vboIdList;
     private final int vertexCount;
+    private final VertexFormat vertexFormat;
+    private final long vertexBytes;
+    private final long indexBytes;
+    private final int indexType;
+    private final int[] lodIndexOffsets;
+    private final int[] lodIndexCounts;
+    private final Vector3f boundsMin;
+    private final Vector3f boundsMax;
+    private final Vector3f boundingCenter;
+    private final float boundingRadius;
+    private final Meshlets meshlets;
+    private final IntBuffer meshletDrawFirsts;
+    private final PointerBuffer meshletDrawOffsets;
+    private final IntBuffer meshletDrawCounts;
+    private int visibleMeshlets;
+    private int instanceVboId;
+    private final GeometryArena arena;
+    private final GeometryArena.Allocation arenaAllocation;
 
-    public Mesh(float[] positions, float[] textCoords, float[] normals, int[] indices) {
-        FloatBuffer posBuffer = null;
-        FloatBuffer textCoordsBuffer = null;
-        FloatBuffer vecNormalsBuffer = null;
-        IntBuffer indicesBuffer = null;
-        try {
-            vertexCount = indices.length;
-            vboIdList = new ArrayList<>();
+    public Mesh(MeshData data) {
+        this(data, VertexFormat.SEPARATE_FLOAT);
+    }
 
-            vaoId = glGenVertexArrays();
-            glBindVertexArray(vaoId);
+    public Mesh(MeshData data, VertexFormat vertexFormat) {
+        this(data, vertexFormat, null);
+    }
 
-            // position VBO
-            int vboId = glGenBuffers();
-            vboIdList.add(vboId);
-            posBuffer = MemoryUtil.memAllocFloat(positions.length);
-            posBuffer.put(positions).flip();
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, posBuffer, GL_STATIC_DRAW);
-            glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
-            glEnableVertexAttribArray(0);
+    /**
+     * Creates a mesh whose vertices and indices live in the given arena instead of buffers of its
+     * own. Such meshes are normally drawn through {@link #recordDraw} and
+     * {@link #recordMeshletDraws}; {@link #render(int)} still works but binds the arena's VAO.
+     */
+    public Mesh(MeshData data, GeometryArena arena) {
+        this(data, VertexFormat.INTERLEAVED_QUANTIZED, arena);
+    }
+
+    private Mesh(MeshData data, VertexFormat vertexFormat, GeometryArena arena) {
+        this.vertexFormat = vertexFormat;
+        this.arena = arena;
+        lodIndexCounts = data.getLodIndexCounts().clone();
+        lodIndexOffsets = new int[lodIndexCounts.length];
+        for (int lod = 1; lod < lodIndexCounts.length; lod++) {
+            lodIndexOffsets[lod] = lodIndexOffsets[lod - 1] + lodIndexCounts[lod - 1];
+        }
+        vertexCount = lodIndexCounts[0];
+        vboIdList = new ArrayList<>();
+
+        boundsMin = new Vector3f();
+        boundsMax = new Vector3f();
+        boundingCenter = new Vector3f();
+        boundingRadius = computeBounds(data.getPositions(), data.getVertexCount(), boundsMin, boundsMax, boundingCenter);
+
+        meshlets = data.getMeshlets();
+        if (meshlets != null) {
+            meshletDrawFirsts = MemoryUtil.memAllocInt(meshlets.getCount());
+            meshletDrawOffsets = MemoryUtil.memAllocPointer(meshlets.getCount());
+            meshletDrawCounts = MemoryUtil.memAllocInt(meshlets.getCount());
+        } else {
+            meshletDrawFirsts = null;
+            meshletDrawOffsets = null;
+            meshletDrawCounts = null;
+        }
+
+        if (arena != null) {
+            arenaAllocation = arena.allocate(data);
+            vaoId = arena.getVaoId();
+            indexType = arenaAllocation.indexType();
+            vertexBytes = (long) data.getVertexCount() * vertexFormat.getBytesPerVertex();
+            indexBytes = (long) data.getIndexCount() * getIndexSize();
+            return;
+        }
+        arenaAllocation = null;
+
+        vaoId = glGenVertexArrays();
+        glBindVertexArray(vaoId);
+
+        if (vertexFormat == VertexFormat.INTERLEAVED_QUANTIZED) {
+            uploadInterleavedQuantized(data);
+        } else {
+            uploadSeparateFloat(data);
+        }
+        vertexBytes = (long) data.getVertexCount() * vertexFormat.getBytesPerVertex();
+
+        // index VBO, 16-bit whenever every vertex is addressable with it
+        int vboId = glGenBuffers();
+        vboIdList.add(vboId);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboId);
+        if (data.getVertexCount() <= 0x10000) {
+            indexType = GL_UNSIGNED_SHORT;
+            ShortBuffer shortIndices = toShortIndices(data.getIndices());
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, shortIndices, GL_STATIC_DRAW);
+            MemoryUtil.memFree(shortIndices);
+            indexBytes = data.getIndexCount() * 2L;
+        } else {
+            indexType = GL_UNSIGNED_INT;
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, data.getIndices(), GL_STATIC_DRAW);
+            indexBytes = data.getIndexCount() * 4L;
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(0);
+    }
+
+    private void uploadSeparateFloat(MeshData data) {
+        // position VBO
+        int vboId = glGenBuffers();
+        vboIdList.add(vboId);
+        glBindBuffer(GL_ARRAY_BUFFER, vboId);
+        glBufferData(GL_ARRAY_BUFFER, data.getPositions(), GL_STATIC_DRAW);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
+        glEnableVertexAttribArray(0);
+
+        // texture coordinates VBO
+        vboId = glGenBuffers();
+        vboIdList.add(vboId);
+        glBindBuffer(GL_ARRAY_BUFFER, vboId);
+        glBufferData(GL_ARRAY_BUFFER, data.getTexCoords(), GL_STATIC_DRAW);
+        glVertexAttribPointer(1, 2, GL_FLOAT, false, 0, 0);
+        glEnableVertexAttribArray(1);
 
-            // texture coordinates VBO
+        // vertex normals VBO, octahedral like the quantized layout so the shader decodes both the same way
+        FloatBuffer normals = encodeNormals(data);
+        try {
             vboId = glGenBuffers();
             vboIdList.add(vboId);
-            textCoordsBuffer = MemoryUtil.memAllocFloat(textCoords.length);
-            textCoordsBuffer.put(textCoords).flip();
             glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, textCoordsBuffer, GL_STATIC_DRAW);
-            glVertexAttribPointer(1, 2, GL_FLOAT, false, 0, 0);
-            glEnableVertexAttribArray(1);
+            glBufferData(GL_ARRAY_BUFFER, normals, GL_STATIC_DRAW);
+            glVertexAttribPointer(2, 2, GL_FLOAT, false, 0, 0);
+            glEnableVertexAttribArray(2);
+        } finally {
+            MemoryUtil.memFree(normals);
+        }
+    }
 
-            // vertex normals VBO
-            vboId = glGenBuffers();
+    private void uploadInterleavedQuantized(MeshData data) {
+        int stride = VertexFormat.INTERLEAVED_QUANTIZED.getBytesPerVertex();
+        ByteBuffer vertices = MemoryUtil.memAlloc(data.getVertexCount() * stride);
+        try {
+            writeInterleavedQuantized(data, vertices);
+
+            int vboId = glGenBuffers();
             vboIdList.add(vboId);
-            vecNormalsBuffer = MemoryUtil.memAllocFloat(normals.length);
-            vecNormalsBuffer.put(normals).flip();
             glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, vecNormalsBuffer, GL_STATIC_DRAW);
-            glVertexAttribPointer(2, 3, GL_FLOAT, false, 0, 0);
+            glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
+
+            glVertexAttribPointer(0, 3, GL_FLOAT, false, stride, 0);
+            glEnableVertexAttribArray(0);
+            glVertexAttribPointer(1, 2, GL_HALF_FLOAT, false, stride, 12);
+            glEnableVertexAttribArray(1);
+            glVertexAttribPointer(2, 2, GL_SHORT, true, stride, 16);
             glEnableVertexAttribArray(2);
+        } finally {
+            MemoryUtil.memFree(vertices);
+        }
+    }
 
-            // index VBO
-            vboId = glGenBuffers();
-            vboIdList.add(vboId);
-            indicesBuffer = MemoryUtil.memAllocInt(indices.length);
-            indicesBuffer.put(indices).flip();
-            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indicesBuffer, GL_STATIC_DRAW);
+    /**
+     * Narrows indices to 16 bits into a new buffer the caller frees. Every index must be below
+     * 65536.
+     */
+    static ShortBuffer toShortIndices(IntBuffer indices) {
+        ShortBuffer shortIndices = MemoryUtil.memAllocShort(indices.remaining());
+        for (int i = 0; i < shortIndices.capacity(); i++) {
+            shortIndices.put(i, (short) indices.get(indices.position() + i));
+        }
+        return shortIndices;
+    }
+
+    /**
+     * Writes the interleaved quantized layout: float3 position, half2 texcoord and the normal
+     * octahedral-encoded into two signed normalized shorts. vertex.glsl decodes it back to a
+     * vec3.
+     */
+    static void writeInterleavedQuantized(MeshData data, ByteBuffer dst) {
+        FloatBuffer positions = data.getPositions();
+        FloatBuffer texCoords = data.getTexCoords();
+        FloatBuffer normals = encodeNormals(data);
 
-            glBindBuffer(GL_ARRAY_BUFFER, 0);
-            glBindVertexArray(0);
+        try {
+            int base = dst.position();
+            for (int i = 0; i < data.getVertexCount(); i++) {
+                int offset = base + i * VertexFormat.INTERLEAVED_QUANTIZED.getBytesPerVertex();
+                dst.putFloat(offset, positions.get(i * 3));
+                dst.putFloat(offset + 4, positions.get(i * 3 + 1));
+                dst.putFloat(offset + 8, positions.get(i * 3 + 2));
+                dst.putShort(offset + 12, Float.floatToFloat16(texCoords.get(i * 2)));
+                dst.putShort(offset + 14, Float.floatToFloat16(texCoords.get(i * 2 + 1)));
+                dst.putShort(offset + 16, packSnorm16(normals.get(i * 2)));
+                dst.putShort(offset + 18, packSnorm16(normals.get(i * 2 + 1)));
+            }
         } finally {
-            if (posBuffer != null) {
-                MemoryUtil.memFree(posBuffer);
+            MemoryUtil.memFree(normals);
+        }
+    }
+
+    /**
+     * Returns the mesh's normals octahedral-encoded, two floats in [-1, 1] per vertex, in a
+     * buffer the caller frees. Meshes without normals get (0, 0), which decodes to +Z.
+     */
+    static FloatBuffer encodeNormals(MeshData data) {
+        FloatBuffer normals = data.getNormals();
+        FloatBuffer encoded = MemoryUtil.memCallocFloat(data.getVertexCount() * 2);
+        if (normals.remaining() > 0) {
+            for (int i = 0; i < data.getVertexCount(); i++) {
+                encodeOctahedral(normals.get(i * 3), normals.get(i * 3 + 1), normals.get(i * 3 + 2), encoded, i * 2);
             }
-            if (textCoordsBuffer != null) {
-                MemoryUtil.memFree(textCoordsBuffer);
+        }
+        return encoded;
+    }
+
+    /**
+     * Projects a unit vector onto the octahedron |x| + |y| + |z| = 1 and unfolds the lower half
+     * over the diagonals, writing the two coordinates to {@code dest[index]} and
+     * {@code dest[index + 1]}. Must match {@code decodeNormal} in vertex.glsl.
+     */
+    static void encodeOctahedral(float x, float y, float z, FloatBuffer dest, int index) {
+        float length = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        if (length == 0.0f) {
+            dest.put(index, 0.0f).put(index + 1, 0.0f);
+            return;
+        }
+        float u = x / length;
+        float v = y / length;
+        if (z < 0.0f) {
+            float foldedU = (1.0f - Math.abs(v)) * signNotZero(u);
+            v = (1.0f - Math.abs(u)) * signNotZero(v);
+            u = foldedU;
+        }
+        dest.put(index, u).put(index + 1, v);
+    }
+
+    private static float signNotZero(float value) {
+        return value >= 0.0f ? 1.0f : -1.0f;
+    }
+
+    private static short packSnorm16(float value) {
+        return (short) Math.round(Math.max(-1.0f, Math.min(1.0f, value)) * 32767.0f);
+    }
+
+    /** Fills in the model-space AABB and bounding sphere center and returns the sphere radius. */
+    private static float computeBounds(FloatBuffer positions, int vertexCount, Vector3f min, Vector3f max,
+                                       Vector3f center) {
+        if (vertexCount == 0) {
+            return 0.0f;
+        }
+
+        min.set(Float.MAX_VALUE);
+        max.set(-Float.MAX_VALUE);
+        for (int i = 0; i < vertexCount; i++) {
+            float x = positions.get(i * 3);
+            float y = positions.get(i * 3 + 1);
+            float z = positions.get(i * 3 + 2);
+            min.set(Math.min(min.x, x), Math.min(min.y, y), Math.min(min.z, z));
+            max.set(Math.max(max.x, x), Math.max(max.y, y), Math.max(max.z, z));
+        }
+        min.add(max, center).mul(0.5f);
+
+        float radiusSquared = 0.0f;
+        for (int i = 0; i < vertexCount; i++) {
+            radiusSquared = Math.max(radiusSquared,
+                    center.distanceSquared(positions.get(i * 3), positions.get(i * 3 + 1), positions.get(i * 3 + 2)));
+        }
+        return (float) Math.sqrt(radiusSquared);
+    }
+
+    /** Draws the given level of detail; levels past the last one draw the coarsest level. */
+    public void render(int lod, GLStateCache stateCache) {
+        lod = Math.min(lod, lodIndexCounts.length - 1);
+
+        // draw vertices
+        if (arenaAllocation != null) {
+            arena.bindIndices(arenaAllocation, stateCache);
+            glDrawElementsBaseVertex(GL_TRIANGLES, lodIndexCounts[lod], indexType,
+                    (long) (arenaAllocation.indexOffset() + lodIndexOffsets[lod]) * getIndexSize(),
+                    arenaAllocation.vertexOffset());
+        } else {
+            stateCache.bindVertexArray(getVaoId());
+            glDrawElements(GL_TRIANGLES, lodIndexCounts[lod], indexType, (long) lodIndexOffsets[lod] * getIndexSize());
+        }
+    }
+
+    /**
+     * Draws {@code instanceCount} copies of the given level in one call. {@code instanceMatrices}
+     * holds one column-major model matrix per instance and is streamed into a per-instance
+     * attribute buffer (locations 3-6) that lives in this mesh's VAO.
+     */
+    public void renderInstanced(int lod, FloatBuffer instanceMatrices, int instanceCount, GLStateCache stateCache) {
+        if (arenaAllocation != null) {
+            throw new IllegalStateException("meshes in a geometry arena are instanced through the arena");
+        }
+        lod = Math.min(lod, lodIndexCounts.length - 1);
+
+        stateCache.bindVertexArray(getVaoId());
+        if (instanceVboId == 0) {
+            createInstanceBuffer();
+        }
+
+        // orphan and refill, the previous frame's data may still be in flight
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+        glBufferData(GL_ARRAY_BUFFER, instanceMatrices, GL_STREAM_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        glDrawElementsInstanced(GL_TRIANGLES, lodIndexCounts[lod], indexType,
+                (long) lodIndexOffsets[lod] * getIndexSize(), instanceCount);
+    }
+
+    private void createInstanceBuffer() {
+        instanceVboId = glGenBuffers();
+        vboIdList.add(instanceVboId);
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+        // a mat4 attribute takes four consecutive vec4 locations
+        for (int column = 0; column < 4; column++) {
+            glVertexAttribPointer(3 + column, 4, GL_FLOAT, false, 16 * 4, column * 4 * 4);
+            glEnableVertexAttribArray(3 + column);
+            glVertexAttribDivisor(3 + column, 1);
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Draws the full-detail level meshlet by meshlet, skipping meshlets outside the frustum or
+     * facing away from the camera. Both the frustum and camera position are in model space.
+     * Neighbouring visible meshlets are merged into a single range before submission.
+     *
+     * @return the number of triangles drawn
+     */
+    public int renderMeshlets(FrustumIntersection frustum, float cameraX, float cameraY, float cameraZ,
+                              GLStateCache stateCache) {
+        if (arenaAllocation != null) {
+            throw new IllegalStateException("meshes in a geometry arena use recordMeshletDraws");
+        }
+        int drawnIndices = cullMeshlets(frustum, cameraX, cameraY, cameraZ);
+
+        meshletDrawOffsets.clear();
+        for (int i = 0; i < meshletDrawFirsts.limit(); i++) {
+            meshletDrawOffsets.put(i, (long) meshletDrawFirsts.get(i) * getIndexSize());
+        }
+        meshletDrawOffsets.limit(meshletDrawFirsts.limit());
+
+        if (meshletDrawCounts.hasRemaining()) {
+            stateCache.bindVertexArray(getVaoId());
+            glMultiDrawElements(GL_TRIANGLES, meshletDrawCounts, indexType, meshletDrawOffsets);
+        }
+        return drawnIndices / 3;
+    }
+
+    /** Records one arena draw of the given level using the matrix in {@code instance}. */
+    public void recordDraw(int lod, int instance) {
+        lod = Math.min(lod, lodIndexCounts.length - 1);
+        arena.addDraw(arenaAllocation, lodIndexOffsets[lod], lodIndexCounts[lod], instance);
+    }
+
+    /**
+     * Arena counterpart of {@link #renderMeshlets}: culls meshlets the same way and records one
+     * arena draw per merged range of visible meshlets.
+     *
+     * @return the number of triangles recorded
+     */
+    public int recordMeshletDraws(FrustumIntersection frustum, float cameraX, float cameraY, float cameraZ,
+                                  int instance) {
+        int drawnIndices = cullMeshlets(frustum, cameraX, cameraY, cameraZ);
+        for (int i = 0; i < meshletDrawFirsts.limit(); i++) {
+            arena.addDraw(arenaAllocation, meshletDrawFirsts.get(i), meshletDrawCounts.get(i), instance);
+        }
+        return drawnIndices / 3;
+    }
+
+    /**
+     * Fills {@code meshletDrawFirsts}/{@code meshletDrawCounts} with the merged index ranges of
+     * the visible meshlets and returns the number of indices they cover.
+     */
+    private int cullMeshlets(FrustumIntersection frustum, float cameraX, float cameraY, float cameraZ) {
+        meshletDrawFirsts.clear();
+        meshletDrawCounts.clear();
+        visibleMeshlets = 0;
+        int drawnIndices = 0;
+        int rangeStart = -1;
+        int rangeEnd = -1;
+
+        for (int m = 0; m < meshlets.getCount(); m++) {
+            if (!meshlets.isInFrustum(m, frustum) || meshlets.isBackfacing(m, cameraX, cameraY, cameraZ)) {
+                continue;
             }
-            if (vecNormalsBuffer != null) {
-                MemoryUtil.memFree(vecNormalsBuffer);
+            visibleMeshlets++;
+            int start = meshlets.getIndexOffset(m);
+            int count = meshlets.getIndexCount(m);
+            drawnIndices += count;
+            if (start == rangeEnd) {
+                rangeEnd += count;
+                continue;
             }
-            if (indicesBuffer != null) {
-                MemoryUtil.memFree(indicesBuffer);
+            if (rangeStart >= 0) {
+                meshletDrawFirsts.put(rangeStart);
+                meshletDrawCounts.put(rangeEnd - rangeStart);
             }
+            rangeStart = start;
+            rangeEnd = start + count;
         }
+        if (rangeStart >= 0) {
+            meshletDrawFirsts.put(rangeStart);
+            meshletDrawCounts.put(rangeEnd - rangeStart);
+        }
+        meshletDrawFirsts.flip();
+        meshletDrawCounts.flip();
+        return drawnIndices;
     }
 
-    public void render() {
-        // bind to the VAO
-        glBindVertexArray(getVaoId());
+    public boolean hasMeshlets() {
+        return meshlets != null && meshlets.getCount() > 1;
+    }
 
-        // draw vertices
-        glDrawElements(GL_TRIANGLES, getVertexCount(), GL_UNSIGNED_INT, 0);
+    public int getMeshletCount() {
+        return meshlets == null ? 0 : meshlets.getCount();
+    }
 
-        // restore state
-        glBindVertexArray(0);
+    /** Meshlets that passed culling in the last {@link #renderMeshlets} call. */
+    public int getVisibleMeshletCount() {
+        return visibleMeshlets;
     }
 
     public void cleanUp() {
+        if (meshlets != null) {
+            MemoryUtil.memFree(meshletDrawFirsts);
+            MemoryUtil.memFree(meshletDrawOffsets);
+            MemoryUtil.memFree(meshletDrawCounts);
+        }
+
+        if (arenaAllocation != null) {
+            // the arena's buffers and VAO are shared, only hand the ranges back
+            arena.free(arenaAllocation);
+            return;
+        }
+
         glDisableVertexAttribArray(0);
 
         glBindBuffer(GL_ARRAY_BUFFER, 0);
@@ -112,7 +473,64 @@ public class Mesh {
         return vaoId;
     }
 
+    /** True if this mesh's data lives in a {@link GeometryArena} rather than its own buffers. */
+    public boolean isInArena() {
+        return arenaAllocation != null;
+    }
+
     public int getVertexCount() {
         return vertexCount;
     }
+
+    /** GL_UNSIGNED_SHORT or GL_UNSIGNED_INT, depending on how many vertices the mesh has. */
+    public int getIndexType() {
+        return indexType;
+    }
+
+    public int getIndexSize() {
+        return indexType == GL_UNSIGNED_SHORT ? 2 : 4;
+    }
+
+    public int getLodCount() {
+        return lodIndexCounts.length;
+    }
+
+    public int getTriangleCount(int lod) {
+        return lodIndexCounts[Math.min(lod, lodIndexCounts.length - 1)] / 3;
+    }
+
+    /** Minimum corner of the mesh's axis-aligned bounding box, in model space. */
+    public Vector3f getBoundsMin() {
+        return boundsMin;
+    }
+
+    public Vector3f getBoundsMax() {
+        return boundsMax;
+    }
+
+    /** Center of the mesh's bounding sphere, in model space. */
+    public Vector3f getBoundingCenter() {
+        return boundingCenter;
+    }
+
+    public float getBoundingRadius() {
+        return boundingRadius;
+    }
+
+    public VertexFormat getVertexFormat() {
+        return vertexFormat;
+    }
+
+    public long getVertexBytes() {
+        return vertexBytes;
+    }
+
+    public long getIndexBytes() {
+        return indexBytes;
+    }
+
+    /** Total GPU memory held by this mesh's vertex and index buffers, in bytes. */
+    public long getByteFootprint() {
+        return vertexBytes + indexBytes;
+    }
 }
\ No newline at end of file
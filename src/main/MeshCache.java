@@ -0,0 +1,229 @@
+package main;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * On-disk cache of imported models so later launches can skip Assimp entirely.
+ *
+ * Each source file gets one cache file holding a header (format version, source path, size,
+ * modification time and a CRC32C of the contents) followed by the meshes' positions,
+ * texcoords, normals and indices in the same layout {@link Mesh} uploads. Warm loads read the
+ * whole file into a native buffer, copy the meshes out of it and free the buffer. The file is not
+ * memory-mapped because a mapping can't be released explicitly: it stays open until the GC
+ * collects it, and on Windows that keeps the file locked, so rewriting a stale entry would fail.
+ */
+public class MeshCache {
+    private static final int MAGIC = 0x4853454D; // "MESH"
+    private static final int VERSION = 5;
+    private static final int HASH_CHUNK_SIZE = 1 << 16;
+
+    private final Path cacheDir;
+
+    public MeshCache(String cacheDir) {
+        this.cacheDir = Paths.get(cacheDir);
+    }
+
+    /**
+     * Returns the cached meshes for the given source file, or null when there is no entry or
+     * the entry no longer matches the source. The returned data owns its buffers and must be
+     * {@link MeshData#free() freed}.
+     */
+    public List<MeshData> load(File source) {
+        Path cacheFile = cacheFileFor(source);
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+
+        ByteBuffer contents = null;
+        List<MeshData> meshes = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            contents = MemoryUtil.memAlloc(Math.toIntExact(channel.size())).order(ByteOrder.nativeOrder());
+            while (contents.hasRemaining() && channel.read(contents) >= 0) {
+                // read the whole entry
+            }
+            contents.flip();
+
+            if (contents.getInt() != MAGIC || contents.getInt() != VERSION) {
+                return null;
+            }
+
+            byte[] pathBytes = new byte[contents.getInt()];
+            contents.get(pathBytes);
+            long size = contents.getLong();
+            long lastModified = contents.getLong();
+            long contentHash = contents.getLong();
+
+            if (!new String(pathBytes, StandardCharsets.UTF_8).equals(source.getPath())
+                    || size != source.length()
+                    || lastModified != source.lastModified()
+                    || contentHash != hashContents(source)) {
+                return null;
+            }
+
+            int meshCount = contents.getInt();
+            for (int i = 0; i < meshCount; i++) {
+                int positionCount = contents.getInt();
+                int texCoordCount = contents.getInt();
+                int normalCount = contents.getInt();
+                int indexCount = contents.getInt();
+                int[] lodIndexCounts = new int[contents.getInt()];
+                for (int lod = 0; lod < lodIndexCounts.length; lod++) {
+                    lodIndexCounts[lod] = contents.getInt();
+                }
+
+                FloatBuffer positions = copyFloats(contents, positionCount);
+                FloatBuffer texCoords = copyFloats(contents, texCoordCount);
+                FloatBuffer normals = copyFloats(contents, normalCount);
+                IntBuffer indices = copyInts(contents, indexCount);
+                MeshData data = new MeshData(positions, texCoords, normals, indices, lodIndexCounts);
+                meshes.add(data);
+
+                int meshletCount = contents.getInt();
+                if (meshletCount > 0) {
+                    int[] offsets = new int[meshletCount];
+                    int[] counts = new int[meshletCount];
+                    float[] bounds = new float[contents.getInt()];
+                    contents.asIntBuffer().get(offsets);
+                    contents.position(contents.position() + meshletCount * 4);
+                    contents.asIntBuffer().get(counts);
+                    contents.position(contents.position() + meshletCount * 4);
+                    contents.asFloatBuffer().get(bounds);
+                    contents.position(contents.position() + bounds.length * 4);
+                    data.setMeshlets(new Meshlets(offsets, counts, bounds));
+                }
+            }
+            return meshes;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("discarding mesh cache for " + source.getName() + ": " + e.getMessage());
+            for (MeshData mesh : meshes) {
+                mesh.free();
+            }
+            return null;
+        } finally {
+            if (contents != null) {
+                MemoryUtil.memFree(contents);
+            }
+        }
+    }
+
+    public void store(File source, List<MeshData> meshes) {
+        try {
+            Files.createDirectories(cacheDir);
+
+            byte[] pathBytes = source.getPath().getBytes(StandardCharsets.UTF_8);
+            int length = 4 * 3 + pathBytes.length + 8 * 3 + 4;
+            for (MeshData mesh : meshes) {
+                length += 4 * 6 + 4 * mesh.getLodCount() + 4 * (mesh.getPositions().remaining()
+                        + mesh.getTexCoords().remaining() + mesh.getNormals().remaining() + mesh.getIndices().remaining());
+                if (mesh.getMeshlets() != null) {
+                    length += 4 + 4 * (mesh.getMeshlets().getCount() * 2 + mesh.getMeshlets().getBounds().length);
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.nativeOrder());
+            buffer.putInt(MAGIC).putInt(VERSION);
+            buffer.putInt(pathBytes.length).put(pathBytes);
+            buffer.putLong(source.length()).putLong(source.lastModified()).putLong(hashContents(source));
+            buffer.putInt(meshes.size());
+            for (MeshData mesh : meshes) {
+                buffer.putInt(mesh.getPositions().remaining());
+                buffer.putInt(mesh.getTexCoords().remaining());
+                buffer.putInt(mesh.getNormals().remaining());
+                buffer.putInt(mesh.getIndices().remaining());
+                buffer.putInt(mesh.getLodCount());
+                for (int lodIndexCount : mesh.getLodIndexCounts()) {
+                    buffer.putInt(lodIndexCount);
+                }
+                putFloats(buffer, mesh.getPositions());
+                putFloats(buffer, mesh.getTexCoords());
+                putFloats(buffer, mesh.getNormals());
+                putInts(buffer, mesh.getIndices());
+
+                Meshlets meshlets = mesh.getMeshlets();
+                if (meshlets == null) {
+                    buffer.putInt(0);
+                } else {
+                    buffer.putInt(meshlets.getCount());
+                    buffer.putInt(meshlets.getBounds().length);
+                    putInts(buffer, IntBuffer.wrap(meshlets.getIndexOffsets()));
+                    putInts(buffer, IntBuffer.wrap(meshlets.getIndexCounts()));
+                    putFloats(buffer, FloatBuffer.wrap(meshlets.getBounds()));
+                }
+            }
+            buffer.flip();
+
+            // write to a temporary file first so a crash never leaves a half-written entry behind
+            Path cacheFile = cacheFileFor(source);
+            Path tempFile = Files.createTempFile(cacheDir, cacheFile.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("failed to write mesh cache for " + source.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private Path cacheFileFor(File source) {
+        String name = source.getPath().replaceAll("[^A-Za-z0-9._-]", "_");
+        return cacheDir.resolve(name + ".meshcache");
+    }
+
+    private static long hashContents(File source) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer chunk = MemoryUtil.memAlloc(HASH_CHUNK_SIZE);
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(chunk) >= 0) {
+                chunk.flip();
+                crc.update(chunk);
+                chunk.clear();
+            }
+        } finally {
+            MemoryUtil.memFree(chunk);
+        }
+        return crc.getValue();
+    }
+
+    private static FloatBuffer copyFloats(ByteBuffer buffer, int count) {
+        FloatBuffer copy = MemoryUtil.memAllocFloat(count);
+        copy.put(buffer.slice(buffer.position(), count * 4).order(ByteOrder.nativeOrder()).asFloatBuffer()).flip();
+        buffer.position(buffer.position() + count * 4);
+        return copy;
+    }
+
+    private static IntBuffer copyInts(ByteBuffer buffer, int count) {
+        IntBuffer copy = MemoryUtil.memAllocInt(count);
+        copy.put(buffer.slice(buffer.position(), count * 4).order(ByteOrder.nativeOrder()).asIntBuffer()).flip();
+        buffer.position(buffer.position() + count * 4);
+        return copy;
+    }
+
+    private static void putFloats(ByteBuffer buffer, FloatBuffer values) {
+        buffer.asFloatBuffer().put(values.duplicate());
+        buffer.position(buffer.position() + values.remaining() * 4);
+    }
+
+    private static void putInts(ByteBuffer buffer, IntBuffer values) {
+        buffer.asIntBuffer().put(values.duplicate());
+        buffer.position(buffer.position() + values.remaining() * 4);
+    }
+}
@@ -0,0 +1,108 @@
+package main;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * CPU-side vertex and index data for a single mesh, laid out the way {@link Mesh} uploads it.
+ * The buffers are allocated off-heap and owned by this instance; {@link #free()} releases them.
+ */
+public class MeshData {
+    private final FloatBuffer positions;
+    private final FloatBuffer texCoords;
+    private final FloatBuffer normals;
+    private final IntBuffer indices;
+    private final int[] lodIndexCounts;
+    private Meshlets meshlets;
+
+    public MeshData(FloatBuffer positions, FloatBuffer texCoords, FloatBuffer normals, IntBuffer indices) {
+        this(positions, texCoords, normals, indices, new int[]{indices.remaining()});
+    }
+
+    /**
+     * @param lodIndexCounts index count of each LOD level; the levels are stored back to back in
+     *                       {@code indices}, full detail first
+     */
+    public MeshData(FloatBuffer positions, FloatBuffer texCoords, FloatBuffer normals, IntBuffer indices,
+                    int[] lodIndexCounts) {
+        this.positions = positions;
+        this.texCoords = texCoords;
+        this.normals = normals;
+        this.indices = indices;
+        this.lodIndexCounts = lodIndexCounts;
+    }
+
+    public static MeshData fromArrays(float[] positions, float[] texCoords, float[] normals, int[] indices) {
+        FloatBuffer posBuffer = MemoryUtil.memAllocFloat(positions.length);
+        posBuffer.put(positions).flip();
+        FloatBuffer texCoordsBuffer = MemoryUtil.memAllocFloat(texCoords.length);
+        texCoordsBuffer.put(texCoords).flip();
+        FloatBuffer normalsBuffer = MemoryUtil.memAllocFloat(normals.length);
+        normalsBuffer.put(normals).flip();
+        IntBuffer indicesBuffer = MemoryUtil.memAllocInt(indices.length);
+        indicesBuffer.put(indices).flip();
+        return new MeshData(posBuffer, texCoordsBuffer, normalsBuffer, indicesBuffer);
+    }
+
+    public FloatBuffer getPositions() {
+        return positions;
+    }
+
+    public FloatBuffer getTexCoords() {
+        return texCoords;
+    }
+
+    public FloatBuffer getNormals() {
+        return normals;
+    }
+
+    public IntBuffer getIndices() {
+        return indices;
+    }
+
+    public int[] getLodIndexCounts() {
+        return lodIndexCounts;
+    }
+
+    public int getLodCount() {
+        return lodIndexCounts.length;
+    }
+
+    /** Meshlets over the full-detail index range, or null if none were built. */
+    public Meshlets getMeshlets() {
+        return meshlets;
+    }
+
+    public void setMeshlets(Meshlets meshlets) {
+        this.meshlets = meshlets;
+    }
+
+    public int getVertexCount() {
+        return positions.remaining() / 3;
+    }
+
+    public int getIndexCount() {
+        return indices.remaining();
+    }
+
+    /**
+     * Returns data that shares this mesh's vertex buffers but uses the given indices. Ownership of
+     * the vertex buffers moves to the result and this mesh's own index buffer is released, so
+     * this instance must not be used afterwards.
+     */
+    public MeshData replaceIndices(IntBuffer newIndices, int[] newLodIndexCounts) {
+        MemoryUtil.memFree(indices);
+        MeshData replaced = new MeshData(positions, texCoords, normals, newIndices, newLodIndexCounts);
+        replaced.setMeshlets(meshlets);
+        return replaced;
+    }
+
+    public void free() {
+        MemoryUtil.memFree(positions);
+        MemoryUtil.memFree(texCoords);
+        MemoryUtil.memFree(normals);
+        MemoryUtil.memFree(indices);
+    }
+}
@@ -1,38 +1,178 @@
 package main;
 
+import org.joml.FrustumIntersection;
+import org.joml.Intersectionf;
 import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
 import org.lwjgl.assimp.*;
+import org.lwjgl.system.MemoryUtil;
 
 import java.io.File;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
 
 public class MeshHandler {
+    private static final int LOD_LEVELS = 4;
+    /** Screen coverage below which each level hands over to the next, coarser one. */
+    private static final float[] LOD_SCREEN_COVERAGE = {0.5f, 0.25f, 0.125f};
+    private static final float LOD_HYSTERESIS = 0.15f;
+    /** Distance mapped to the far end of the render queue's depth field when far culling is off. */
+    private static final float DEFAULT_DEPTH_RANGE = 100.0f;
+    /** World units the spatial index's fat boxes extend past an object's bounds. */
+    private static final float SPATIAL_MARGIN = 0.25f;
+    /** Renderers culled per bulk math call; sized so one batch of bounds stays in L1. */
+    private static final int CULL_BATCH = 64;
+
     private List<MeshRenderer> meshRenderers;
+    private final TransformStore transforms = new TransformStore(1024);
+    private final DynamicAabbTree<MeshRenderer> spatialIndex = new DynamicAabbTree<>(SPATIAL_MARGIN);
+    private final Matrix4f spatialModel = new Matrix4f();
+    private final Vector3f spatialMin = new Vector3f();
+    private final Vector3f spatialMax = new Vector3f();
+    private final Picker picker = new Picker();
+    private final MeshCache meshCache;
+    private final AssetLoader assetLoader;
+    private final GeometryArena geometryArena;
+    private VertexFormat vertexFormat = VertexFormat.INTERLEAVED_QUANTIZED;
+    private volatile boolean optimizeMeshes = true;
+    private volatile boolean generateLods = true;
+
+    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final float[] frustumPlanes = new float[24];
+    private final BulkMath bulkMath = BulkMath.get();
+    /** Culling runs on job workers, so each thread gets its own bounds scratch. */
+    private final ThreadLocal<CullScratch> cullScratch = ThreadLocal.withInitial(CullScratch::new);
+    /** Per renderer: distance from the camera this frame, or -1 if it was culled or is disabled. */
+    private float[] cullDistances = new float[256];
+    private final Vector3f frameCameraPos = new Vector3f();
+    private float frameProjectionScale;
+    private float farCullDistance;
+    private int visibleCount;
+    private int culledCount;
+
+    private final Map<Mesh, Integer> meshUseCount = new HashMap<>();
+    private final Map<Mesh, InstanceBatch[]> instanceBatches = new HashMap<>();
+    private boolean instancingEnabled = true;
+    private int drawCalls;
+    private final RenderQueue renderQueue = new RenderQueue();
+    private final ObjectUniformRing objectUniforms = new ObjectUniformRing();
+    private final List<Object> queuedDraws = new ArrayList<>();
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Matrix4f modelViewProjection = new Matrix4f();
+    private final Matrix4f inverseModel = new Matrix4f();
+    private final Matrix4f scratchModel = new Matrix4f();
+    private final FrustumIntersection modelFrustum = new FrustumIntersection();
+    private final Vector3f modelCameraPos = new Vector3f();
+    private int trianglesRendered;
+    private int meshletsVisible;
+    private int meshletsTotal;
+    private int trianglesFullDetail;
 
     public MeshHandler() {
         meshRenderers = new ArrayList<>();
+        meshCache = new MeshCache("cache/meshes");
+        assetLoader = new AssetLoader();
+        if (GeometryArena.isSupported()) {
+            geometryArena = new GeometryArena();
+            System.out.println("static geometry arena enabled, "
+                    + (geometryArena.isMultiDrawIndirect() ? "multi-draw indirect" : "one draw per command"));
+        } else {
+            geometryArena = null;
+            System.out.println("GL 4.2 not available, static meshes keep their own buffers");
+        }
     }
 
+    /**
+     * Queues every model in models/ for import on the asset loader's workers. Meshes show up
+     * in the scene as {@link #processUploads(long)} drains them on the GL thread.
+     */
     public void loadMeshes() {
         File modelsDir = new File("models");
         if (modelsDir.exists() && modelsDir.isDirectory()) {
             for (File file : modelsDir.listFiles()) {
                 if (file.isFile() && file.getName().endsWith(".obj")) {
-                    try {
-                        List<Mesh> loadedMeshes = loadModel(file.getName());
-                        for (Mesh mesh : loadedMeshes) {
-                            meshRenderers.add(new MeshRenderer(mesh));
-                        }
-                        //System.out.println("loaded: " + file.getName());
-                    } catch (Exception e) {
-                        System.err.println("error loading " + file.getName() + ": " + e.getMessage());
-                    }
+                    assetLoader.submit(file, meshCache, this::loadModel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Uploads imported meshes to the GPU until the time budget runs out. Must be called on the
+     * GL thread; at least one mesh is uploaded per call so loading always makes progress.
+     */
+    public void processUploads(long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        AssetLoader.LoadedModel model;
+        while ((model = assetLoader.pollUpload()) != null) {
+            while (model.hasNextMesh()) {
+                MeshData data = model.nextMesh();
+                Mesh mesh = createMesh(data);
+                System.out.printf("uploaded %s mesh: %d vertices, %s, %d bytes on GPU (%d bytes as separate floats)%n",
+                        model.getFile().getName(), data.getVertexCount(), vertexFormat, mesh.getByteFootprint(),
+                        (long) data.getVertexCount() * VertexFormat.SEPARATE_FLOAT.getBytesPerVertex() + mesh.getIndexBytes());
+                addRenderer(new MeshRenderer(mesh, transforms));
+                if (System.nanoTime() - deadline > 0) {
+                    return;
+                }
+            }
+            assetLoader.finishUpload(model);
+            System.out.printf("loaded %s (%s) in %.2f ms, %.2f ms after request%n", model.getFile().getName(),
+                    model.isWarm() ? "warm, from cache" : "cold, assimp import",
+                    model.getImportNanos() / 1_000_000.0,
+                    (System.nanoTime() - model.getSubmitTime()) / 1_000_000.0);
+        }
+    }
+
+    /** Static meshes go to the geometry arena when there is one; it only holds the quantized layout. */
+    private Mesh createMesh(MeshData data) {
+        if (geometryArena != null && vertexFormat == VertexFormat.INTERLEAVED_QUANTIZED) {
+            return new Mesh(data, geometryArena);
+        }
+        return new Mesh(data, vertexFormat);
+    }
+
+    /** Sets the vertex layout used for meshes uploaded from now on. */
+    public void setVertexFormat(VertexFormat vertexFormat) {
+        this.vertexFormat = vertexFormat;
+    }
+
+    /** Enables the vertex cache / vertex fetch reordering stage for models imported from now on. */
+    public void setOptimizeMeshes(boolean optimizeMeshes) {
+        this.optimizeMeshes = optimizeMeshes;
+    }
+
+    /** Enables LOD chain generation for models imported from now on. */
+    public void setGenerateLods(boolean generateLods) {
+        this.generateLods = generateLods;
+    }
+
+    public boolean isLoading() {
+        return !assetLoader.isIdle();
+    }
+
+    public void cleanUp() {
+        assetLoader.shutdown();
+        for (InstanceBatch[] batches : instanceBatches.values()) {
+            for (InstanceBatch batch : batches) {
+                if (batch != null) {
+                    batch.free();
                 }
             }
         }
+        if (geometryArena != null) {
+            geometryArena.cleanUp();
+        }
+        objectUniforms.cleanUp();
     }
 
     public void addGroundPlane() {
@@ -58,92 +198,490 @@ public class MeshHandler {
                 0, 1, 2,
                 2, 3, 0
         };
-        Mesh groundPlane = new Mesh(groundVertices, groundTexCoords, groundNormals, groundIndices);
-        meshRenderers.add(new MeshRenderer(groundPlane));
+        MeshData groundData = MeshData.fromArrays(groundVertices, groundTexCoords, groundNormals, groundIndices);
+        Mesh groundPlane = geometryArena != null ? new Mesh(groundData, geometryArena) : new Mesh(groundData);
+        groundData.free();
+        addRenderer(new MeshRenderer(groundPlane, transforms));
     }
 
-    private List<Mesh> loadModel(String fileName) {
-        AIScene scene = Assimp.aiImportFile("models/" + fileName,
+    private List<MeshData> loadModel(File file) {
+        AIScene scene = Assimp.aiImportFile(file.getPath(),
                 Assimp.aiProcess_Triangulate | Assimp.aiProcess_FlipUVs);
 
-        if (scene == null || scene.mNumMeshes() < 1) {
+        if (scene == null) {
             throw new RuntimeException("error loading model: " + Assimp.aiGetErrorString());
         }
 
-        List<Mesh> meshes = new ArrayList<>();
+        List<MeshData> meshes = new ArrayList<>();
+        boolean converted = false;
+        try {
+            if (scene.mNumMeshes() < 1) {
+                throw new RuntimeException("error loading model: " + file.getName() + " has no meshes");
+            }
+            for (int i = 0; i < scene.mNumMeshes(); i++) {
+                meshes.add(convertMesh(file, i, AIMesh.create(scene.mMeshes().get(i))));
+            }
+            converted = true;
+        } finally {
+            Assimp.aiReleaseImport(scene);
+            if (!converted) {
+                for (MeshData mesh : meshes) {
+                    mesh.free();
+                }
+            }
+        }
+
+        return meshes;
+    }
+
+    /** Runs one imported mesh through the build stages; nothing is left allocated if one throws. */
+    private MeshData convertMesh(File file, int meshIndex, AIMesh aiMesh) {
+        MeshData mesh = processMesh(aiMesh);
+        try {
+            int vertexCountBefore = mesh.getVertexCount();
+            int indexCountBefore = mesh.getIndexCount();
+            MeshData welded = MeshWelder.weld(mesh);
+            if (welded != mesh) {
+                mesh.free();
+                mesh = welded;
+            }
+            System.out.printf("welded %s mesh %d: %d -> %d vertices, %d -> %d indices%n",
+                    file.getName(), meshIndex, vertexCountBefore, mesh.getVertexCount(),
+                    indexCountBefore, mesh.getIndexCount());
+
+            if (optimizeMeshes) {
+                mesh = optimizeMesh(file, meshIndex, mesh);
+            }
+            if (generateLods) {
+                mesh = MeshSimplifier.buildLodChain(mesh, LOD_LEVELS);
+                System.out.printf("built %d LOD levels for %s mesh %d, index counts %s%n", mesh.getLodCount(),
+                        file.getName(), meshIndex, Arrays.toString(mesh.getLodIndexCounts()));
+            }
+            mesh.setMeshlets(Meshlets.build(mesh, mesh.getLodIndexCounts()[0]));
+            System.out.printf("split %s mesh %d into %d meshlets%n", file.getName(), meshIndex,
+                    mesh.getMeshlets().getCount());
+            return mesh;
+        } catch (RuntimeException | Error e) {
+            mesh.free();
+            throw e;
+        }
+    }
+
+    private MeshData optimizeMesh(File file, int meshIndex, MeshData data) {
+        int cacheSize = MeshOptimizer.SIMULATED_CACHE_SIZE;
+        float acmrBefore = MeshOptimizer.computeAcmr(data.getIndices(), data.getVertexCount(), cacheSize);
+        float atvrBefore = MeshOptimizer.computeAtvr(data.getIndices(), data.getVertexCount(), cacheSize);
+
+        MeshOptimizer.optimizeVertexCache(data.getIndices(), data.getVertexCount());
+        MeshData optimized = MeshOptimizer.optimizeVertexFetch(data);
+        data.free();
+
+        System.out.printf("optimized %s mesh %d: ACMR %.3f -> %.3f, ATVR %.3f -> %.3f%n", file.getName(), meshIndex,
+                acmrBefore, MeshOptimizer.computeAcmr(optimized.getIndices(), optimized.getVertexCount(), cacheSize),
+                atvrBefore, MeshOptimizer.computeAtvr(optimized.getIndices(), optimized.getVertexCount(), cacheSize));
+        return optimized;
+    }
+
+    /**
+     * Copies an Assimp mesh into off-heap buffers without going through Java objects. Positions
+     * and normals share Assimp's packed 3-float layout and are copied in one block; texcoords
+     * drop the unused third component and faces are flattened straight from native memory.
+     * {@code MeshConversionBenchmark} measures it.
+     */
+    static MeshData processMesh(AIMesh aiMesh) {
+        long mesh = aiMesh.address();
+        int vertexCount = AIMesh.nmNumVertices(mesh);
+        long vectorBytes = (long) vertexCount * AIVector3D.SIZEOF;
+
+        FloatBuffer positions = MemoryUtil.memAllocFloat(vertexCount * 3);
+        MemoryUtil.memCopy(MemoryUtil.memGetAddress(mesh + AIMesh.MVERTICES), MemoryUtil.memAddress(positions), vectorBytes);
+
+        FloatBuffer texCoords = MemoryUtil.memCallocFloat(vertexCount * 2);
+        long texCoordsAddress = MemoryUtil.memGetAddress(mesh + AIMesh.MTEXTURECOORDS);
+        if (texCoordsAddress != NULL) {
+            long dst = MemoryUtil.memAddress(texCoords);
+            for (int i = 0; i < vertexCount; i++) {
+                long src = texCoordsAddress + (long) i * AIVector3D.SIZEOF;
+                MemoryUtil.memPutFloat(dst + i * 8L, MemoryUtil.memGetFloat(src));
+                MemoryUtil.memPutFloat(dst + i * 8L + 4, MemoryUtil.memGetFloat(src + 4));
+            }
+        }
+
+        FloatBuffer normals;
+        long normalsAddress = MemoryUtil.memGetAddress(mesh + AIMesh.MNORMALS);
+        if (normalsAddress != NULL) {
+            normals = MemoryUtil.memAllocFloat(vertexCount * 3);
+            MemoryUtil.memCopy(normalsAddress, MemoryUtil.memAddress(normals), vectorBytes);
+        } else {
+            normals = MemoryUtil.memAllocFloat(0);
+        }
 
-        for (int i = 0; i < scene.mNumMeshes(); i++) {
-            AIMesh aiMesh = AIMesh.create(scene.mMeshes().get(i));
-            Mesh mesh = processMesh(aiMesh, scene);
-            meshes.add(mesh);
+        int faceCount = aiMesh.mNumFaces();
+        long faces = MemoryUtil.memGetAddress(mesh + AIMesh.MFACES);
+        int indexCount = 0;
+        for (int i = 0; i < faceCount; i++) {
+            indexCount += AIFace.nmNumIndices(faces + (long) i * AIFace.SIZEOF);
         }
 
-        Assimp.aiReleaseImport(scene);
+        IntBuffer indices = MemoryUtil.memAllocInt(indexCount);
+        long dst = MemoryUtil.memAddress(indices);
+        for (int i = 0; i < faceCount; i++) {
+            long face = faces + (long) i * AIFace.SIZEOF;
+            long faceBytes = AIFace.nmNumIndices(face) * 4L;
+            MemoryUtil.memCopy(MemoryUtil.memGetAddress(face + AIFace.MINDICES), dst, faceBytes);
+            dst += faceBytes;
+        }
 
-        return meshes;
+        return new MeshData(positions, texCoords, normals, indices);
+    }
+
+    /**
+     * Draws every enabled mesh, picking each one's level of detail from how much of the screen
+     * its bounding sphere covers. Meshes drawn at full detail are culled meshlet by meshlet.
+     * Meshes in the geometry arena are recorded as indirect draws and submitted together at the
+     * end; they don't need instance batches since every arena draw already has its own matrix.
+     *
+     * Everything else goes through a {@link RenderQueue} sorted by program and VAO, then front
+     * to back, and binds through the shader handler's {@link GLStateCache}. Model matrices of
+     * those draws are written once into the {@link ObjectUniformRing} before any of them run.
+     * Renderers with a non-default {@link Material} always take this path, drawn with their
+     * material's own shader variant.
+     */
+    public void renderMeshes(ShaderHandler shaderHandler, Matrix4f view, Matrix4f projection, Vector3f cameraPos) {
+        prepareFrame(view, projection, cameraPos);
+        cullRange(0, meshRenderers.size());
+        submitMeshes(shaderHandler);
+    }
+
+    /**
+     * First step of {@link #renderMeshes} when it is split across a task graph: takes the frame's
+     * camera. Must run before {@link #cullRange} and after any renderer was added or removed.
+     */
+    public void prepareFrame(Matrix4f view, Matrix4f projection, Vector3f cameraPos) {
+        projection.mul(view, viewProjection);
+        frustum.set(viewProjection);
+        BulkMath.frustumPlanes(viewProjection, frustumPlanes);
+        frameCameraPos.set(cameraPos);
+        frameProjectionScale = projection.m11();
+        if (cullDistances.length < meshRenderers.size()) {
+            cullDistances = new float[Math.max(meshRenderers.size(), cullDistances.length * 2)];
+        }
     }
 
-    private Mesh processMesh(AIMesh aiMesh, AIScene scene) {
-        List<Float> vertices = new ArrayList<>();
-        List<Float> texCoords = new ArrayList<>();
-        List<Float> normals = new ArrayList<>();
-        List<Integer> indices = new ArrayList<>();
+    /**
+     * Culls renderers {@code start} to {@code end} and picks their LODs. Touches nothing but those
+     * renderers and their slots in the cull results, so disjoint ranges can run on different
+     * threads at the same time.
+     */
+    public void cullRange(int start, int end) {
+        CullScratch scratch = cullScratch.get();
+        for (int batchStart = start; batchStart < end; batchStart += CULL_BATCH) {
+            int count = Math.min(CULL_BATCH, end - batchStart);
+            gatherBounds(batchStart, count, scratch);
+            bulkMath.transformSpheres(scratch.matrices, scratch.localCenters, scratch.localRadii,
+                    scratch.x, scratch.y, scratch.z, scratch.radii, 0, count);
+            bulkMath.testSpheres(frustumPlanes, scratch.x, scratch.y, scratch.z, scratch.radii,
+                    scratch.inside, 0, count);
+            bulkMath.transformAabbs(scratch.matrices, scratch.localMin, scratch.localMax,
+                    scratch.min, scratch.max, 0, count);
+            for (int i = 0; i < count; i++) {
+                int r = batchStart + i;
+                MeshRenderer renderer = meshRenderers.get(r);
+                float distance = isCulled(renderer, i, scratch) ? -1 : scratch.distance(i, frameCameraPos);
+                cullDistances[r] = distance;
+                if (distance >= 0) {
+                    renderer.setLodLevel(selectLod(renderer, scratch.radii[i], distance, frameProjectionScale));
+                }
+            }
+        }
+    }
+
+    /** Last step of {@link #renderMeshes}: records and issues the draws of everything that survived culling. */
+    public void submitMeshes(ShaderHandler shaderHandler) {
+        int shaderProgram = shaderHandler.getShaderProgram();
+        int instancedShaderProgram = shaderHandler.getInstancedShaderProgram();
+        GLStateCache stateCache = shaderHandler.getStateCache();
+        Vector3f cameraPos = frameCameraPos;
+        trianglesRendered = 0;
+        trianglesFullDetail = 0;
+        meshletsVisible = 0;
+        meshletsTotal = 0;
+        drawCalls = 0;
+        visibleCount = 0;
+        culledCount = 0;
+        renderQueue.clear();
+        queuedDraws.clear();
+        objectUniforms.begin();
+        float depthRange = farCullDistance > 0 ? farCullDistance : DEFAULT_DEPTH_RANGE;
+
+        for (int r = 0; r < meshRenderers.size(); r++) {
+            MeshRenderer renderer = meshRenderers.get(r);
+            if (cullDistances[r] < 0) {
+                if (renderer.isEnabled()) {
+                    culledCount++;
+                }
+                continue;
+            }
+            visibleCount++;
+
+            Matrix4f modelMatrix = renderer.getModelMatrix(scratchModel);
+            Mesh mesh = renderer.getMesh();
+            trianglesFullDetail += mesh.getTriangleCount(0);
 
-        for (int i = 0; i < aiMesh.mNumVertices(); i++) {
-            AIVector3D vertex = aiMesh.mVertices().get(i);
-            vertices.add(vertex.x());
-            vertices.add(vertex.y());
-            vertices.add(vertex.z());
+            // shared paths draw with the default material's instanced variant
+            boolean defaultMaterial = renderer.getMaterial() == Material.DEFAULT;
+            if (mesh.isInArena() && defaultMaterial) {
+                int instance = geometryArena.addInstance(modelMatrix);
+                if (renderer.getLodLevel() == 0 && mesh.hasMeshlets()) {
+                    updateModelSpaceCulling(modelMatrix, cameraPos);
+                    trianglesRendered += mesh.recordMeshletDraws(modelFrustum,
+                            modelCameraPos.x, modelCameraPos.y, modelCameraPos.z, instance);
+                    meshletsVisible += mesh.getVisibleMeshletCount();
+                    meshletsTotal += mesh.getMeshletCount();
+                } else {
+                    mesh.recordDraw(renderer.getLodLevel(), instance);
+                    trianglesRendered += mesh.getTriangleCount(renderer.getLodLevel());
+                }
+                continue;
+            }
 
-            if (aiMesh.mTextureCoords(0) != null) {
-                AIVector3D texCoord = aiMesh.mTextureCoords(0).get(i);
-                texCoords.add(texCoord.x());
-                texCoords.add(texCoord.y());
-            } else {
-                texCoords.add(0.0f);
-                texCoords.add(0.0f);
+            // meshes used by several renderers are collected and drawn instanced afterwards
+            if (instancingEnabled && defaultMaterial && meshUseCount.get(mesh) > 1) {
+                instanceBatchFor(mesh, renderer.getLodLevel()).add(modelMatrix);
+                continue;
             }
 
-            if (aiMesh.mNormals() != null) {
-                AIVector3D normal = aiMesh.mNormals().get(i);
-                normals.add(normal.x());
-                normals.add(normal.y());
-                normals.add(normal.z());
+            renderer.setObjectSlot(objectUniforms.add(modelMatrix));
+            queueDraw(renderer, renderer.getMaterial().getProgram(shaderHandler).getProgramId(), mesh.getVaoId(),
+                    cullDistances[r] / depthRange);
+        }
+
+        for (InstanceBatch[] batches : instanceBatches.values()) {
+            for (InstanceBatch batch : batches) {
+                if (batch != null && batch.getCount() > 0) {
+                    queueDraw(batch, instancedShaderProgram, batch.getMesh().getVaoId(), 0.0f);
+                }
             }
         }
+        if (geometryArena != null && geometryArena.getDrawCount() > 0) {
+            queueDraw(geometryArena, instancedShaderProgram, geometryArena.getVaoId(), 0.0f);
+        }
 
-        for (int i = 0; i < aiMesh.mNumFaces(); i++) {
-            AIFace face = aiMesh.mFaces().get(i);
-            for (int j = 0; j < face.mNumIndices(); j++) {
-                indices.add(face.mIndices().get(j));
+        objectUniforms.upload();
+        renderQueue.sort();
+        for (int i = 0; i < renderQueue.size(); i++) {
+            switch (queuedDraws.get(renderQueue.getValue(i))) {
+                case MeshRenderer renderer -> {
+                    stateCache.useProgram(renderer.getMaterial().getProgram(shaderHandler).getProgramId());
+                    Matrix4f modelMatrix = renderer.getModelMatrix(scratchModel);
+                    objectUniforms.bind(renderer.getObjectSlot());
+                    Mesh mesh = renderer.getMesh();
+                    if (renderer.getLodLevel() == 0 && mesh.hasMeshlets() && !mesh.isInArena()) {
+                        trianglesRendered += renderMeshlets(mesh, modelMatrix, cameraPos, stateCache);
+                    } else {
+                        renderer.render(stateCache);
+                        trianglesRendered += mesh.getTriangleCount(renderer.getLodLevel());
+                    }
+                    drawCalls++;
+                }
+                case InstanceBatch batch -> {
+                    stateCache.useProgram(instancedShaderProgram);
+                    int instances = batch.draw(stateCache);
+                    trianglesRendered += batch.getMesh().getTriangleCount(batch.getLod()) * instances;
+                    drawCalls++;
+                }
+                case GeometryArena arena -> {
+                    stateCache.useProgram(instancedShaderProgram);
+                    drawCalls += arena.draw(stateCache);
+                }
+                default -> throw new IllegalStateException("unexpected queued draw");
             }
         }
+        objectUniforms.fence();
+        stateCache.useProgram(shaderProgram);
+    }
 
-        return new Mesh(listToArray(vertices), listToArray(texCoords), listToArray(normals), listToIntArray(indices));
+    /** Adds an opaque draw to this frame's render queue; {@code draw} is dispatched on by type. */
+    private void queueDraw(Object draw, int program, int vertexArray, float depth) {
+        renderQueue.add(RenderQueue.makeKey(RenderQueue.Pass.OPAQUE, program, vertexArray, 0, depth),
+                queuedDraws.size());
+        queuedDraws.add(draw);
     }
 
-    private float[] listToArray(List<Float> list) {
-        float[] array = new float[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            array[i] = list.get(i);
+    private InstanceBatch instanceBatchFor(Mesh mesh, int lod) {
+        InstanceBatch[] batches = instanceBatches.computeIfAbsent(mesh, m -> new InstanceBatch[m.getLodCount()]);
+        if (batches[lod] == null) {
+            batches[lod] = new InstanceBatch(mesh, lod);
         }
-        return array;
+        return batches[lod];
     }
 
-    private int[] listToIntArray(List<Integer> list) {
-        return list.stream().mapToInt(Integer::intValue).toArray();
+    private void addRenderer(MeshRenderer renderer) {
+        meshRenderers.add(renderer);
+        meshUseCount.merge(renderer.getMesh(), 1, Integer::sum);
+        updateSpatialBounds(renderer);
+        renderer.setSpatialProxy(spatialIndex.insert(spatialMin.x, spatialMin.y, spatialMin.z,
+                spatialMax.x, spatialMax.y, spatialMax.z, renderer));
     }
 
-    public void renderMeshes(ShaderHandler shaderHandler) {
-        int shaderProgram = shaderHandler.getShaderProgram();
-        for (MeshRenderer renderer : meshRenderers) {
-            Matrix4f modelMatrix = renderer.getModelMatrix();
-            shaderHandler.setUniform("model", modelMatrix);
+    /**
+     * Adds another copy of an existing renderer's mesh with its own transform. Copies share GPU
+     * data and are drawn instanced when instancing is enabled. Returns the new renderer's index.
+     */
+    public int addMeshInstance(int index, Matrix4f modelMatrix) {
+        MeshRenderer instance = new MeshRenderer(meshRenderers.get(index).getMesh(), transforms);
+        instance.setModelMatrix(modelMatrix);
+        addRenderer(instance);
+        return meshRenderers.size() - 1;
+    }
+
+    public void setInstancingEnabled(boolean instancingEnabled) {
+        this.instancingEnabled = instancingEnabled;
+    }
+
+    /** Draw calls issued by the last {@link #renderMeshes} call. */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /** Draw calls the last {@link #renderMeshes} call would have needed without instancing. */
+    public int getDrawCallsWithoutInstancing() {
+        return visibleCount;
+    }
+
+    /** Copies the model matrices and model-space bounds of {@code count} renderers into the batch. */
+    private void gatherBounds(int first, int count, CullScratch scratch) {
+        for (int i = 0; i < count; i++) {
+            MeshRenderer renderer = meshRenderers.get(first + i);
+            Mesh mesh = renderer.getMesh();
+            renderer.getModelMatrix(scratch.matrices, i * 16);
+            put(mesh.getBoundingCenter(), scratch.localCenters, i);
+            put(mesh.getBoundsMin(), scratch.localMin, i);
+            put(mesh.getBoundsMax(), scratch.localMax, i);
+            scratch.localRadii[i] = mesh.getBoundingRadius();
+        }
+    }
+
+    private static void put(Vector3f v, float[] dest, int index) {
+        dest[index * 3] = v.x;
+        dest[index * 3 + 1] = v.y;
+        dest[index * 3 + 2] = v.z;
+    }
+
+    /**
+     * Tests batch entry {@code i} after the bulk sphere test, cheapest test first: disabled, past
+     * the far-cull distance (past the fog end everything is fog colored anyway), outside the
+     * frustum by sphere, then by box.
+     */
+    private boolean isCulled(MeshRenderer renderer, int i, CullScratch scratch) {
+        if (!renderer.isEnabled() || !scratch.inside[i]) {
+            return true;
+        }
+        if (farCullDistance > 0 && scratch.distance(i, frameCameraPos) - scratch.radii[i] > farCullDistance) {
+            return true;
+        }
+        int b = i * 3;
+        return !frustum.testAab(scratch.min[b], scratch.min[b + 1], scratch.min[b + 2],
+                scratch.max[b], scratch.max[b + 1], scratch.max[b + 2]);
+    }
+
+    /**
+     * One batch of renderers being culled, laid out for {@link BulkMath}; one per culling thread.
+     * World spheres are {@code x}/{@code y}/{@code z}/{@code radii}, world boxes {@code min}/{@code max}.
+     */
+    private static final class CullScratch {
+        final float[] matrices = new float[CULL_BATCH * 16];
+        final float[] localCenters = new float[CULL_BATCH * 3];
+        final float[] localRadii = new float[CULL_BATCH];
+        final float[] localMin = new float[CULL_BATCH * 3];
+        final float[] localMax = new float[CULL_BATCH * 3];
+        final float[] x = new float[CULL_BATCH];
+        final float[] y = new float[CULL_BATCH];
+        final float[] z = new float[CULL_BATCH];
+        final float[] radii = new float[CULL_BATCH];
+        final boolean[] inside = new boolean[CULL_BATCH];
+        final float[] min = new float[CULL_BATCH * 3];
+        final float[] max = new float[CULL_BATCH * 3];
+
+        float distance(int i, Vector3f cameraPos) {
+            return Vector3f.length(x[i] - cameraPos.x, y[i] - cameraPos.y, z[i] - cameraPos.z);
+        }
+    }
+
+    /** Objects further than this from the camera are skipped; zero or less disables far culling. */
+    public void setFarCullDistance(float farCullDistance) {
+        this.farCullDistance = farCullDistance;
+    }
+
+    /** Objects that passed culling in the last {@link #renderMeshes} call. */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /** Objects rejected by frustum or far culling in the last {@link #renderMeshes} call. */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    /**
+     * Meshlets are culled in model space: the frustum comes from the full MVP and the camera is
+     * moved into the mesh's frame, so meshlet bounds never need transforming.
+     */
+    private void updateModelSpaceCulling(Matrix4f modelMatrix, Vector3f cameraPos) {
+        viewProjection.mul(modelMatrix, modelViewProjection);
+        modelFrustum.set(modelViewProjection);
+        modelMatrix.invert(inverseModel).transformPosition(cameraPos, modelCameraPos);
+    }
 
-            //System.out.println("Rendering mesh with model matrix: " +
-            // modelMatrix);
-            renderer.render(shaderProgram);
+    private int renderMeshlets(Mesh mesh, Matrix4f modelMatrix, Vector3f cameraPos, GLStateCache stateCache) {
+        updateModelSpaceCulling(modelMatrix, cameraPos);
+
+        int triangles = mesh.renderMeshlets(modelFrustum, modelCameraPos.x, modelCameraPos.y, modelCameraPos.z,
+                stateCache);
+        meshletsVisible += mesh.getVisibleMeshletCount();
+        meshletsTotal += mesh.getMeshletCount();
+        return triangles;
+    }
+
+    /**
+     * Moves one renderer's LOD towards the level its screen coverage asks for. Switching only
+     * happens once coverage is clearly past a threshold, so objects sitting right on a boundary
+     * don't flicker between levels.
+     */
+    private static int selectLod(MeshRenderer renderer, float radius, float cameraDistance, float projectionScale) {
+        Mesh mesh = renderer.getMesh();
+        int lod = Math.min(renderer.getLodLevel(), mesh.getLodCount() - 1);
+
+        float distance = Math.max(cameraDistance, 0.001f);
+        // bounding sphere radius as a fraction of half the viewport height
+        float coverage = radius * projectionScale / distance;
+
+        while (lod + 1 < mesh.getLodCount() && lod < LOD_SCREEN_COVERAGE.length
+                && coverage < LOD_SCREEN_COVERAGE[lod] * (1.0f - LOD_HYSTERESIS)) {
+            lod++;
         }
+        while (lod > 0 && coverage > LOD_SCREEN_COVERAGE[lod - 1] * (1.0f + LOD_HYSTERESIS)) {
+            lod--;
+        }
+        return lod;
+    }
+
+    /** Triangles submitted by the last {@link #renderMeshes} call. */
+    public int getTrianglesRendered() {
+        return trianglesRendered;
+    }
+
+    public int getMeshletsVisible() {
+        return meshletsVisible;
+    }
+
+    public int getMeshletsTotal() {
+        return meshletsTotal;
+    }
+
+    /** Triangles the last {@link #renderMeshes} call would have submitted without LODs. */
+    public int getTrianglesFullDetail() {
+        return trianglesFullDetail;
     }
 
     public void setMeshEnabled(int index, boolean enabled) {
@@ -152,19 +690,141 @@ public class MeshHandler {
         }
     }
 
+    public void setMeshMaterial(int index, Material material) {
+        if (index >= 0 && index < meshRenderers.size()) {
+            meshRenderers.get(index).setMaterial(material);
+        }
+    }
+
     public void setMeshModelMatrix(int index, Matrix4f modelMatrix) {
         if (index >= 0 && index < meshRenderers.size()) {
             meshRenderers.get(index).setModelMatrix(modelMatrix);
         }
     }
 
+    /**
+     * Removes a renderer. Once no renderer uses its mesh any more the mesh is released, which for
+     * arena meshes returns its ranges to the arena for reuse by later uploads.
+     */
+    public void removeMesh(int index) {
+        if (index < 0 || index >= meshRenderers.size()) {
+            return;
+        }
+        MeshRenderer removed = meshRenderers.remove(index);
+        spatialIndex.remove(removed.getSpatialProxy());
+        removed.setSpatialProxy(-1);
+        removed.releaseTransform();
+        Mesh mesh = removed.getMesh();
+        if (meshUseCount.merge(mesh, -1, Integer::sum) > 0) {
+            return;
+        }
+        meshUseCount.remove(mesh);
+        InstanceBatch[] batches = instanceBatches.remove(mesh);
+        if (batches != null) {
+            for (InstanceBatch batch : batches) {
+                if (batch != null) {
+                    batch.free();
+                }
+            }
+        }
+        mesh.cleanUp();
+    }
+
     public int getMeshCount() {
         return meshRenderers.size();
     }
 
     public void updateMeshTransformations(float deltaTime) {
-        for (MeshRenderer renderer : meshRenderers) {
-            renderer.update(deltaTime);
+        transforms.updateLocalMatrices(0, transforms.size());
+        transforms.propagateWorldMatrices();
+    }
+
+    /** Attaches a renderer to another transform; see {@link MeshRenderer#setParent}. */
+    public void setMeshParent(int index, int parentTransform) {
+        if (index >= 0 && index < meshRenderers.size()) {
+            meshRenderers.get(index).setParent(parentTransform);
+        }
+    }
+
+    /**
+     * Moves the renderers whose world matrix changed in the last transform update in the spatial
+     * index. Most moves stay inside the object's fat box and don't touch the tree.
+     */
+    public void updateSpatialIndex() {
+        for (int i = 0; i < meshRenderers.size(); i++) {
+            MeshRenderer renderer = meshRenderers.get(i);
+            if (transforms.hasWorldChanged(renderer.getTransform())) {
+                updateSpatialBounds(renderer);
+                spatialIndex.move(renderer.getSpatialProxy(), spatialMin.x, spatialMin.y, spatialMin.z,
+                        spatialMax.x, spatialMax.y, spatialMax.z);
+            }
+        }
+    }
+
+    /** World box of the renderer's mesh, left in {@code spatialMin}/{@code spatialMax}. */
+    private void updateSpatialBounds(MeshRenderer renderer) {
+        Mesh mesh = renderer.getMesh();
+        renderer.getModelMatrix(spatialModel).transformAab(mesh.getBoundsMin(), mesh.getBoundsMax(), spatialMin, spatialMax);
+    }
+
+    /**
+     * Returns the nearest enabled renderer whose world box the ray from {@code origin} along the
+     * unit {@code direction} hits within {@code maxDistance}, or null. The distance of the hit is
+     * available from {@link #getPickDistance()} afterwards.
+     */
+    public MeshRenderer pickMesh(Vector3f origin, Vector3f direction, float maxDistance) {
+        picker.origin.set(origin);
+        picker.direction.set(direction);
+        picker.hit = null;
+        picker.distance = maxDistance;
+        spatialIndex.raycast(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z,
+                maxDistance, picker);
+        return picker.hit;
+    }
+
+    /** Distance to the renderer the last {@link #pickMesh} returned. */
+    public float getPickDistance() {
+        return picker.distance;
+    }
+
+    /** Narrow phase of {@link #pickMesh}: tests the ray against each candidate's own box. */
+    private final class Picker implements DynamicAabbTree.RayCallback {
+        final Vector3f origin = new Vector3f();
+        final Vector3f direction = new Vector3f();
+        final Vector2f result = new Vector2f();
+        MeshRenderer hit;
+        float distance;
+
+        @Override
+        public float report(int proxy, float maxDistance) {
+            MeshRenderer renderer = spatialIndex.getUserData(proxy);
+            if (!renderer.isEnabled()) {
+                return maxDistance;
+            }
+            updateSpatialBounds(renderer);
+            if (!Intersectionf.intersectRayAab(origin, direction, spatialMin, spatialMax, result)
+                    || result.x > maxDistance) {
+                return maxDistance;
+            }
+            // a ray starting inside the box hits it at distance 0, which would stop the search
+            hit = renderer;
+            distance = Math.max(result.x, 0);
+            return Math.max(result.x, Math.ulp(0f));
         }
     }
+
+    /** Scene objects by world box, for overlap, frustum and ray queries. */
+    public DynamicAabbTree<MeshRenderer> getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /** Index of a renderer for {@link #setMeshEnabled} and friends, or -1. */
+    public int getMeshIndex(MeshRenderer renderer) {
+        return meshRenderers.indexOf(renderer);
+    }
+
+    /** Every renderer's transform, packed for batch updates. */
+    public TransformStore getTransforms() {
+        return transforms;
+    }
 }
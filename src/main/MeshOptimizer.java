@@ -0,0 +1,231 @@
+package main;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Optional mesh build stage that reorders triangles and vertices for the GPU.
+ *
+ * {@link #optimizeVertexCache} reorders triangles with Tom Forsyth's linear-speed vertex cache
+ * algorithm so recently transformed vertices get reused, then {@link #optimizeVertexFetch}
+ * renumbers vertices in the order the new index buffer first touches them so vertex fetches
+ * stream through memory. Neither needs a GL context.
+ */
+public final class MeshOptimizer {
+    /** Size of the modelled post-transform cache when scoring vertices. */
+    private static final int CACHE_SIZE = 32;
+    /** FIFO size used when reporting ACMR/ATVR; roughly what current hardware behaves like. */
+    public static final int SIMULATED_CACHE_SIZE = 16;
+
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+
+    private MeshOptimizer() {
+    }
+
+    /** Reorders the triangles of the given triangle list in place. */
+    public static void optimizeVertexCache(IntBuffer indexBuffer, int vertexCount) {
+        int indexCount = indexBuffer.remaining();
+        int triangleCount = indexCount / 3;
+        if (triangleCount == 0 || indexCount % 3 != 0) {
+            return;
+        }
+
+        int[] indices = new int[indexCount];
+        indexBuffer.get(indexBuffer.position(), indices);
+
+        // triangle adjacency per vertex, compacted as triangles get emitted
+        int[] valence = new int[vertexCount];
+        for (int index : indices) {
+            valence[index]++;
+        }
+        int[] adjacencyOffset = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyOffset[v + 1] = adjacencyOffset[v] + valence[v];
+        }
+        int[] adjacency = new int[indexCount];
+        int[] fill = Arrays.copyOf(adjacencyOffset, vertexCount);
+        for (int i = 0; i < indexCount; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+
+        int[] cachePosition = new int[vertexCount];
+        Arrays.fill(cachePosition, -1);
+        float[] vertexScore = new float[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            vertexScore[v] = scoreVertex(-1, valence[v]);
+        }
+
+        float[] triangleScore = new float[triangleCount];
+        boolean[] emitted = new boolean[triangleCount];
+        int bestTriangle = 0;
+        for (int t = 0; t < triangleCount; t++) {
+            triangleScore[t] = vertexScore[indices[t * 3]] + vertexScore[indices[t * 3 + 1]]
+                    + vertexScore[indices[t * 3 + 2]];
+            if (triangleScore[t] > triangleScore[bestTriangle]) {
+                bestTriangle = t;
+            }
+        }
+
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] newCache = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+        int[] output = new int[indexCount];
+        int outputCount = 0;
+        int scanCursor = 0;
+
+        while (bestTriangle >= 0) {
+            emitted[bestTriangle] = true;
+            int newCacheCount = 0;
+            for (int k = 0; k < 3; k++) {
+                int v = indices[bestTriangle * 3 + k];
+                output[outputCount++] = v;
+                newCache[newCacheCount++] = v;
+
+                // drop the triangle from the vertex's live adjacency
+                int start = adjacencyOffset[v];
+                int end = start + valence[v];
+                for (int a = start; a < end; a++) {
+                    if (adjacency[a] == bestTriangle) {
+                        adjacency[a] = adjacency[end - 1];
+                        break;
+                    }
+                }
+                valence[v]--;
+            }
+
+            // most recently used vertices go to the front, the rest keep their order
+            for (int c = 0; c < cacheCount; c++) {
+                int v = cache[c];
+                if (v != newCache[0] && v != newCache[1] && v != newCache[2]) {
+                    newCache[newCacheCount++] = v;
+                }
+            }
+
+            bestTriangle = -1;
+            float bestScore = -1.0f;
+            for (int c = 0; c < newCacheCount; c++) {
+                int v = newCache[c];
+                cachePosition[v] = c < CACHE_SIZE ? c : -1;
+                float score = scoreVertex(cachePosition[v], valence[v]);
+                float delta = score - vertexScore[v];
+                vertexScore[v] = score;
+
+                int start = adjacencyOffset[v];
+                for (int a = start; a < start + valence[v]; a++) {
+                    int t = adjacency[a];
+                    triangleScore[t] += delta;
+                    if (c < CACHE_SIZE && triangleScore[t] > bestScore) {
+                        bestScore = triangleScore[t];
+                        bestTriangle = t;
+                    }
+                }
+            }
+
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheCount = Math.min(newCacheCount, CACHE_SIZE);
+
+            if (bestTriangle < 0) {
+                // nothing left around the cache, continue with the next untouched triangle
+                while (scanCursor < triangleCount && emitted[scanCursor]) {
+                    scanCursor++;
+                }
+                bestTriangle = scanCursor < triangleCount ? scanCursor : -1;
+            }
+        }
+
+        indexBuffer.put(indexBuffer.position(), output);
+    }
+
+    /**
+     * Returns a copy of the mesh with vertices renumbered in first-use order. Vertices no
+     * triangle references are dropped.
+     */
+    public static MeshData optimizeVertexFetch(MeshData data) {
+        int vertexCount = data.getVertexCount();
+        IntBuffer indices = data.getIndices();
+        int indexCount = data.getIndexCount();
+        boolean hasNormals = data.getNormals().remaining() > 0;
+
+        int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int[] order = new int[vertexCount];
+        int newVertexCount = 0;
+        IntBuffer newIndices = MemoryUtil.memAllocInt(indexCount);
+        for (int i = 0; i < indexCount; i++) {
+            int v = indices.get(i);
+            if (remap[v] < 0) {
+                remap[v] = newVertexCount;
+                order[newVertexCount++] = v;
+            }
+            newIndices.put(i, remap[v]);
+        }
+
+        FloatBuffer positions = MemoryUtil.memAllocFloat(newVertexCount * 3);
+        FloatBuffer texCoords = MemoryUtil.memAllocFloat(newVertexCount * 2);
+        FloatBuffer normals = MemoryUtil.memAllocFloat(hasNormals ? newVertexCount * 3 : 0);
+        for (int i = 0; i < newVertexCount; i++) {
+            int src = order[i];
+            for (int c = 0; c < 3; c++) {
+                positions.put(i * 3 + c, data.getPositions().get(src * 3 + c));
+                if (hasNormals) {
+                    normals.put(i * 3 + c, data.getNormals().get(src * 3 + c));
+                }
+            }
+            texCoords.put(i * 2, data.getTexCoords().get(src * 2));
+            texCoords.put(i * 2 + 1, data.getTexCoords().get(src * 2 + 1));
+        }
+
+        return new MeshData(positions, texCoords, normals, newIndices);
+    }
+
+    /** Average cache miss ratio: transformed vertices per triangle, 0.5 is the practical optimum. */
+    public static float computeAcmr(IntBuffer indices, int vertexCount, int cacheSize) {
+        int triangleCount = indices.remaining() / 3;
+        return triangleCount == 0 ? 0.0f : (float) countCacheMisses(indices, vertexCount, cacheSize) / triangleCount;
+    }
+
+    /** Average transform to vertex ratio: transformed vertices per vertex, 1.0 is optimal. */
+    public static float computeAtvr(IntBuffer indices, int vertexCount, int cacheSize) {
+        return vertexCount == 0 ? 0.0f : (float) countCacheMisses(indices, vertexCount, cacheSize) / vertexCount;
+    }
+
+    private static int countCacheMisses(IntBuffer indices, int vertexCount, int cacheSize) {
+        // FIFO cache: a vertex is resident if it was inserted within the last cacheSize misses
+        int[] insertedAt = new int[vertexCount];
+        Arrays.fill(insertedAt, Integer.MIN_VALUE / 2);
+        int misses = 0;
+        for (int i = indices.position(); i < indices.limit(); i++) {
+            int v = indices.get(i);
+            if (misses - insertedAt[v] > cacheSize) {
+                insertedAt[v] = misses;
+                misses++;
+            }
+        }
+        return misses;
+    }
+
+    private static float scoreVertex(int cachePosition, int valence) {
+        if (valence == 0) {
+            return -1.0f;
+        }
+
+        float score = 0.0f;
+        if (cachePosition >= 3) {
+            float scaler = 1.0f / (CACHE_SIZE - 3);
+            score = (float) Math.pow(1.0f - (cachePosition - 3) * scaler, CACHE_DECAY_POWER);
+        } else if (cachePosition >= 0) {
+            // the last triangle's vertices get a fixed score so it isn't immediately reused
+            score = LAST_TRIANGLE_SCORE;
+        }
+
+        return score + VALENCE_BOOST_SCALE * (float) Math.pow(valence, -VALENCE_BOOST_POWER);
+    }
+}
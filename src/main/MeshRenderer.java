@@ -3,64 +3,132 @@ package main;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 
-import static org.lwjgl.opengl.GL20.glGetUniformLocation;
-import static org.lwjgl.opengl.GL20.glUniformMatrix4fv;
-
 public class MeshRenderer {
     private Mesh mesh;
     private boolean isEnabled;
-    private Matrix4f modelMatrix;
-    private Vector3f position;
-    private Vector3f rotation;
-    private Vector3f scale;
+    private final TransformStore transforms;
+    private final int transform;
+    private int lodLevel;
+    private int objectSlot;
+    private int spatialProxy = -1;
+    private Material material = Material.DEFAULT;
 
-    public MeshRenderer(Mesh mesh) {
+    /** The renderer's transform lives in {@code transforms} until {@link #releaseTransform()}. */
+    public MeshRenderer(Mesh mesh, TransformStore transforms) {
         this.mesh = mesh;
         this.isEnabled = true;
-        this.modelMatrix = new Matrix4f().identity();
-        this.position = new Vector3f(0, 0, 0);
-        this.rotation = new Vector3f(0, 0, 0);
-        this.scale = new Vector3f(1, 1, 1);
+        this.transforms = transforms;
+        this.transform = transforms.create();
     }
 
     public void setEnabled(boolean enabled) {
         this.isEnabled = enabled;
     }
 
+    /** Sets the model matrix relative to the parent transform, or to the world if there is none. */
     public void setModelMatrix(Matrix4f modelMatrix) {
-        this.modelMatrix = modelMatrix;
+        transforms.setLocalMatrix(transform, modelMatrix);
+    }
+
+    /**
+     * Attaches the renderer to another transform, e.g. the player's or the camera's, so it follows
+     * it. Pass {@link TransformStore#NO_PARENT} to detach it again.
+     */
+    public void setParent(int parentTransform) {
+        transforms.setParent(transform, parentTransform);
     }
 
     public void setPosition(Vector3f position) {
-        this.position = position;
+        transforms.setPosition(transform, position.x, position.y, position.z);
     }
 
+    /** Euler angles in degrees, applied about X, then Y, then Z. */
     public void setRotation(Vector3f rotation) {
-        this.rotation = rotation;
+        transforms.setRotationEuler(transform, rotation.x, rotation.y, rotation.z);
     }
 
     public void setScale(Vector3f scale) {
-        this.scale = scale;
+        transforms.setScale(transform, scale.x, scale.y, scale.z);
     }
 
+    /**
+     * Brings this renderer's model matrix up to date right away. Normally all of them are updated
+     * together, and only where something changed, by {@link TransformStore#propagateWorldMatrices}.
+     */
     public void update(float deltaTime) {
-        modelMatrix.identity()
-                .translate(position)
-                .rotateX((float) Math.toRadians(rotation.x))
-                .rotateY((float) Math.toRadians(rotation.y))
-                .rotateZ((float) Math.toRadians(rotation.z))
-                .scale(scale);
+        transforms.updateWorldMatrix(transform);
+    }
+
+    /** Handle of this renderer's entry in the transform store. */
+    public int getTransform() {
+        return transform;
+    }
+
+    /** Removes the renderer's transform from the store; the renderer can't be used afterwards. */
+    public void releaseTransform() {
+        transforms.destroy(transform);
     }
 
-    public void render(int shaderProgram) {
+    /** Draws the mesh at the current LOD. The model matrix uniform must already be set. */
+    public void render(GLStateCache stateCache) {
         if (isEnabled) {
-            int modelLoc = glGetUniformLocation(shaderProgram, "model");
-            glUniformMatrix4fv(modelLoc, false, modelMatrix.get(new float[16]));
-            mesh.render();
+            mesh.render(lodLevel, stateCache);
         }
     }
 
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    public Mesh getMesh() {
+        return mesh;
+    }
+
+    public int getLodLevel() {
+        return lodLevel;
+    }
+
+    public void setLodLevel(int lodLevel) {
+        this.lodLevel = lodLevel;
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    public void setMaterial(Material material) {
+        this.material = material;
+    }
+
+    /** This frame's slot in the per-object uniform ring. */
+    public int getObjectSlot() {
+        return objectSlot;
+    }
+
+    public void setObjectSlot(int objectSlot) {
+        this.objectSlot = objectSlot;
+    }
+
+    /** This renderer's leaf in the mesh handler's spatial index, or -1 if it isn't in it. */
+    public int getSpatialProxy() {
+        return spatialProxy;
+    }
+
+    public void setSpatialProxy(int spatialProxy) {
+        this.spatialProxy = spatialProxy;
+    }
+
     public Matrix4f getModelMatrix() {
-        return new Matrix4f(modelMatrix);
+        return getModelMatrix(new Matrix4f());
+    }
+
+    /** Copies the model matrix into {@code dest} and returns it, for callers that run every frame. */
+    public Matrix4f getModelMatrix(Matrix4f dest) {
+        return transforms.getWorldMatrix(transform, dest);
+    }
+
+    /** Copies the model matrix into {@code dest} at {@code offset}, column-major. */
+    public void getModelMatrix(float[] dest, int offset) {
+        transforms.getWorldMatrix(transform, dest, offset);
     }
 }
\ No newline at end of file
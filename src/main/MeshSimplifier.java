@@ -0,0 +1,340 @@
+package main;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Quadric error metric simplifier used to build LOD chains at import time.
+ *
+ * Edges are collapsed into one of their endpoints (never a new position), so every LOD keeps
+ * indexing the original vertex buffer and only needs its own index range. Vertices on open
+ * borders or UV/normal seams are locked so simplified levels never open cracks.
+ */
+public final class MeshSimplifier {
+    /** Each LOD level targets this fraction of the previous level's triangles. */
+    private static final float LEVEL_REDUCTION = 0.5f;
+    /** A level that can't get below this fraction of the previous one ends the chain. */
+    private static final float MIN_USEFUL_REDUCTION = 0.85f;
+    /** Largest collapse error allowed, relative to the squared mesh extent. */
+    private static final float MAX_RELATIVE_ERROR = 0.0025f;
+
+    private MeshSimplifier() {
+    }
+
+    /**
+     * Appends up to {@code maxLevels - 1} simplified index ranges after the mesh's own indices
+     * and returns the result. The input's index buffer is released; vertex buffers move over to
+     * the returned data unchanged.
+     */
+    public static MeshData buildLodChain(MeshData data, int maxLevels) {
+        int[] current = new int[data.getIndexCount()];
+        data.getIndices().get(data.getIndices().position(), current);
+        if (current.length % 3 != 0) {
+            return data;
+        }
+
+        List<int[]> levels = new ArrayList<>();
+        levels.add(current);
+        float extent = computeExtent(data.getPositions(), data.getVertexCount());
+        float maxError = MAX_RELATIVE_ERROR * extent * extent;
+
+        while (levels.size() < maxLevels) {
+            int targetTriangles = (int) (current.length / 3 * LEVEL_REDUCTION);
+            int[] next = simplify(current, data.getPositions(), data.getVertexCount(), targetTriangles, maxError);
+            if (next.length == 0 || next.length > current.length * MIN_USEFUL_REDUCTION) {
+                break;
+            }
+            MeshOptimizer.optimizeVertexCache(IntBuffer.wrap(next), data.getVertexCount());
+            levels.add(next);
+            current = next;
+        }
+
+        if (levels.size() == 1) {
+            return data;
+        }
+
+        int total = 0;
+        int[] lodIndexCounts = new int[levels.size()];
+        for (int i = 0; i < levels.size(); i++) {
+            lodIndexCounts[i] = levels.get(i).length;
+            total += lodIndexCounts[i];
+        }
+        IntBuffer combined = MemoryUtil.memAllocInt(total);
+        for (int[] level : levels) {
+            combined.put(level);
+        }
+        combined.flip();
+        return data.replaceIndices(combined, lodIndexCounts);
+    }
+
+    /**
+     * Collapses edges of the given triangle list, cheapest first, until at most
+     * {@code targetTriangles} remain or no collapse under {@code maxError} is left.
+     */
+    public static int[] simplify(int[] indices, FloatBuffer positions, int vertexCount, int targetTriangles,
+                                 float maxError) {
+        int triangleCount = indices.length / 3;
+        int[] triangles = indices.clone();
+        boolean[] deadTriangle = new boolean[triangleCount];
+        int liveTriangles = triangleCount;
+
+        double[] quadrics = new double[vertexCount * 10];
+        int[][] adjacency = new int[vertexCount][];
+        int[] adjacencyCount = new int[vertexCount];
+        for (int t = 0; t < triangleCount; t++) {
+            addPlaneQuadric(quadrics, positions, triangles, t);
+            for (int k = 0; k < 3; k++) {
+                addAdjacency(adjacency, adjacencyCount, triangles[t * 3 + k], t);
+            }
+        }
+
+        boolean[] locked = findLockedVertices(triangles, positions, vertexCount);
+        boolean[] removed = new boolean[vertexCount];
+        int[] version = new int[vertexCount];
+
+        PriorityQueue<Collapse> queue = new PriorityQueue<>();
+        for (int t = 0; t < triangleCount; t++) {
+            for (int k = 0; k < 3; k++) {
+                pushCollapse(queue, quadrics, positions, locked, version,
+                        triangles[t * 3 + k], triangles[t * 3 + (k + 1) % 3]);
+            }
+        }
+
+        while (liveTriangles > targetTriangles && !queue.isEmpty()) {
+            Collapse collapse = queue.poll();
+            if (collapse.cost > maxError) {
+                break;
+            }
+            int src = collapse.src;
+            int dst = collapse.dst;
+            if (removed[src] || removed[dst]
+                    || version[src] != collapse.srcVersion || version[dst] != collapse.dstVersion) {
+                continue;
+            }
+            if (flipsTriangle(triangles, deadTriangle, adjacency[src], adjacencyCount[src], positions, src, dst)) {
+                continue;
+            }
+
+            for (int a = 0; a < adjacencyCount[src]; a++) {
+                int t = adjacency[src][a];
+                if (deadTriangle[t]) {
+                    continue;
+                }
+                int base = t * 3;
+                if (triangles[base] == dst || triangles[base + 1] == dst || triangles[base + 2] == dst) {
+                    deadTriangle[t] = true;
+                    liveTriangles--;
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    if (triangles[base + k] == src) {
+                        triangles[base + k] = dst;
+                    }
+                }
+                addAdjacency(adjacency, adjacencyCount, dst, t);
+            }
+
+            for (int q = 0; q < 10; q++) {
+                quadrics[dst * 10 + q] += quadrics[src * 10 + q];
+            }
+            removed[src] = true;
+            version[dst]++;
+
+            for (int a = 0; a < adjacencyCount[dst]; a++) {
+                int t = adjacency[dst][a];
+                if (deadTriangle[t]) {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    int neighbour = triangles[t * 3 + k];
+                    if (neighbour != dst) {
+                        pushCollapse(queue, quadrics, positions, locked, version, dst, neighbour);
+                    }
+                }
+            }
+        }
+
+        int[] result = new int[liveTriangles * 3];
+        int written = 0;
+        for (int t = 0; t < triangleCount; t++) {
+            if (!deadTriangle[t]) {
+                System.arraycopy(triangles, t * 3, result, written, 3);
+                written += 3;
+            }
+        }
+        return result;
+    }
+
+    private static void pushCollapse(PriorityQueue<Collapse> queue, double[] quadrics, FloatBuffer positions,
+                                     boolean[] locked, int[] version, int a, int b) {
+        if (locked[a] && locked[b]) {
+            return;
+        }
+        double costAtoB = locked[a] ? Double.MAX_VALUE : evaluate(quadrics, a, b, positions, b);
+        double costBtoA = locked[b] ? Double.MAX_VALUE : evaluate(quadrics, a, b, positions, a);
+        if (costAtoB <= costBtoA) {
+            queue.add(new Collapse(a, b, version[a], version[b], (float) costAtoB));
+        } else {
+            queue.add(new Collapse(b, a, version[b], version[a], (float) costBtoA));
+        }
+    }
+
+    /** Error of moving to vertex {@code target} under the combined quadric of {@code a} and {@code b}. */
+    private static double evaluate(double[] quadrics, int a, int b, FloatBuffer positions, int target) {
+        double x = positions.get(target * 3);
+        double y = positions.get(target * 3 + 1);
+        double z = positions.get(target * 3 + 2);
+        int qa = a * 10;
+        int qb = b * 10;
+        double a2 = quadrics[qa] + quadrics[qb];
+        double ab = quadrics[qa + 1] + quadrics[qb + 1];
+        double ac = quadrics[qa + 2] + quadrics[qb + 2];
+        double ad = quadrics[qa + 3] + quadrics[qb + 3];
+        double b2 = quadrics[qa + 4] + quadrics[qb + 4];
+        double bc = quadrics[qa + 5] + quadrics[qb + 5];
+        double bd = quadrics[qa + 6] + quadrics[qb + 6];
+        double c2 = quadrics[qa + 7] + quadrics[qb + 7];
+        double cd = quadrics[qa + 8] + quadrics[qb + 8];
+        double d2 = quadrics[qa + 9] + quadrics[qb + 9];
+        return a2 * x * x + 2 * ab * x * y + 2 * ac * x * z + 2 * ad * x
+                + b2 * y * y + 2 * bc * y * z + 2 * bd * y
+                + c2 * z * z + 2 * cd * z
+                + d2;
+    }
+
+    private static void addPlaneQuadric(double[] quadrics, FloatBuffer positions, int[] triangles, int t) {
+        int i0 = triangles[t * 3];
+        int i1 = triangles[t * 3 + 1];
+        int i2 = triangles[t * 3 + 2];
+        double[] n = normal(positions, i0, i1, i2);
+        double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+        if (length == 0) {
+            return;
+        }
+        double a = n[0] / length;
+        double b = n[1] / length;
+        double c = n[2] / length;
+        double d = -(a * positions.get(i0 * 3) + b * positions.get(i0 * 3 + 1) + c * positions.get(i0 * 3 + 2));
+        double[] plane = {a * a, a * b, a * c, a * d, b * b, b * c, b * d, c * c, c * d, d * d};
+        for (int k = 0; k < 3; k++) {
+            int q = triangles[t * 3 + k] * 10;
+            for (int i = 0; i < 10; i++) {
+                quadrics[q + i] += plane[i];
+            }
+        }
+    }
+
+    private static boolean flipsTriangle(int[] triangles, boolean[] deadTriangle, int[] around, int count,
+                                         FloatBuffer positions, int src, int dst) {
+        for (int a = 0; a < count; a++) {
+            int t = around[a];
+            if (deadTriangle[t]) {
+                continue;
+            }
+            int i0 = triangles[t * 3];
+            int i1 = triangles[t * 3 + 1];
+            int i2 = triangles[t * 3 + 2];
+            if (i0 == dst || i1 == dst || i2 == dst) {
+                continue;
+            }
+            double[] before = normal(positions, i0, i1, i2);
+            double[] after = normal(positions, i0 == src ? dst : i0, i1 == src ? dst : i1, i2 == src ? dst : i2);
+            if (before[0] * after[0] + before[1] * after[1] + before[2] * after[2] <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double[] normal(FloatBuffer positions, int i0, int i1, int i2) {
+        double ux = positions.get(i1 * 3) - positions.get(i0 * 3);
+        double uy = positions.get(i1 * 3 + 1) - positions.get(i0 * 3 + 1);
+        double uz = positions.get(i1 * 3 + 2) - positions.get(i0 * 3 + 2);
+        double vx = positions.get(i2 * 3) - positions.get(i0 * 3);
+        double vy = positions.get(i2 * 3 + 1) - positions.get(i0 * 3 + 1);
+        double vz = positions.get(i2 * 3 + 2) - positions.get(i0 * 3 + 2);
+        return new double[]{uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx};
+    }
+
+    /** Locks vertices on open borders and vertices that share a position with another vertex. */
+    private static boolean[] findLockedVertices(int[] triangles, FloatBuffer positions, int vertexCount) {
+        boolean[] locked = new boolean[vertexCount];
+
+        Map<Long, Integer> edgeUse = new HashMap<>();
+        for (int t = 0; t < triangles.length / 3; t++) {
+            for (int k = 0; k < 3; k++) {
+                int a = triangles[t * 3 + k];
+                int b = triangles[t * 3 + (k + 1) % 3];
+                edgeUse.merge(((long) Math.min(a, b) << 32) | Math.max(a, b), 1, Integer::sum);
+            }
+        }
+        for (Map.Entry<Long, Integer> edge : edgeUse.entrySet()) {
+            if (edge.getValue() == 1) {
+                locked[(int) (edge.getKey() >>> 32)] = true;
+                locked[(int) (long) edge.getKey()] = true;
+            }
+        }
+
+        Map<String, Integer> firstAtPosition = new HashMap<>();
+        for (int v = 0; v < vertexCount; v++) {
+            String key = positions.get(v * 3) + "," + positions.get(v * 3 + 1) + "," + positions.get(v * 3 + 2);
+            Integer other = firstAtPosition.putIfAbsent(key, v);
+            if (other != null) {
+                locked[v] = true;
+                locked[other] = true;
+            }
+        }
+        return locked;
+    }
+
+    private static void addAdjacency(int[][] adjacency, int[] adjacencyCount, int vertex, int triangle) {
+        int[] list = adjacency[vertex];
+        if (list == null) {
+            list = adjacency[vertex] = new int[8];
+        } else if (adjacencyCount[vertex] == list.length) {
+            list = adjacency[vertex] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[adjacencyCount[vertex]++] = triangle;
+    }
+
+    private static float computeExtent(FloatBuffer positions, int vertexCount) {
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int v = 0; v < vertexCount; v++) {
+            for (int c = 0; c < 3; c++) {
+                min[c] = Math.min(min[c], positions.get(v * 3 + c));
+                max[c] = Math.max(max[c], positions.get(v * 3 + c));
+            }
+        }
+        return Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+    }
+
+    private static class Collapse implements Comparable<Collapse> {
+        private final int src;
+        private final int dst;
+        private final int srcVersion;
+        private final int dstVersion;
+        private final float cost;
+
+        private Collapse(int src, int dst, int srcVersion, int dstVersion, float cost) {
+            this.src = src;
+            this.dst = dst;
+            this.srcVersion = srcVersion;
+            this.dstVersion = dstVersion;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Collapse other) {
+            return Float.compare(cost, other.cost);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package main;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Mesh build stage that merges vertices with identical attributes and drops triangles that
+ * collapse as a result (or were degenerate to begin with). Assimp emits one vertex per face
+ * corner for most OBJ files, so this typically shrinks the vertex count several times over.
+ */
+public final class MeshWelder {
+    private MeshWelder() {
+    }
+
+    /**
+     * Returns a new, welded copy of the given triangle mesh. The input is left untouched; data
+     * that isn't a triangle list is returned as-is.
+     */
+    public static MeshData weld(MeshData data) {
+        int vertexCount = data.getVertexCount();
+        int indexCount = data.getIndexCount();
+        if (indexCount % 3 != 0) {
+            return data;
+        }
+
+        FloatBuffer positions = data.getPositions();
+        FloatBuffer texCoords = data.getTexCoords();
+        FloatBuffer normals = data.getNormals();
+        IntBuffer indices = data.getIndices();
+        boolean hasNormals = normals.remaining() > 0;
+
+        // open-addressing table of unique vertex ids, keyed by a hash of all attribute bits
+        int tableSize = Integer.highestOneBit(Math.max(vertexCount, 1) * 2 - 1) << 1;
+        int[] table = new int[tableSize];
+        Arrays.fill(table, -1);
+
+        int[] remap = new int[vertexCount];
+        int[] firstSource = new int[vertexCount];
+        int uniqueCount = 0;
+
+        for (int v = 0; v < vertexCount; v++) {
+            int slot = hashVertex(positions, texCoords, normals, hasNormals, v) & (tableSize - 1);
+            while (true) {
+                int candidate = table[slot];
+                if (candidate == -1) {
+                    table[slot] = uniqueCount;
+                    firstSource[uniqueCount] = v;
+                    remap[v] = uniqueCount++;
+                    break;
+                }
+                if (sameVertex(positions, texCoords, normals, hasNormals, firstSource[candidate], v)) {
+                    remap[v] = candidate;
+                    break;
+                }
+                slot = (slot + 1) & (tableSize - 1);
+            }
+        }
+
+        FloatBuffer weldedPositions = MemoryUtil.memAllocFloat(uniqueCount * 3);
+        FloatBuffer weldedTexCoords = MemoryUtil.memAllocFloat(uniqueCount * 2);
+        FloatBuffer weldedNormals = MemoryUtil.memAllocFloat(hasNormals ? uniqueCount * 3 : 0);
+        for (int i = 0; i < uniqueCount; i++) {
+            int src = firstSource[i];
+            for (int c = 0; c < 3; c++) {
+                weldedPositions.put(i * 3 + c, positions.get(src * 3 + c));
+                if (hasNormals) {
+                    weldedNormals.put(i * 3 + c, normals.get(src * 3 + c));
+                }
+            }
+            weldedTexCoords.put(i * 2, texCoords.get(src * 2));
+            weldedTexCoords.put(i * 2 + 1, texCoords.get(src * 2 + 1));
+        }
+
+        IntBuffer weldedIndices = MemoryUtil.memAllocInt(indexCount);
+        int written = 0;
+        for (int i = 0; i < indexCount; i += 3) {
+            int a = remap[indices.get(i)];
+            int b = remap[indices.get(i + 1)];
+            int c = remap[indices.get(i + 2)];
+            if (a == b || b == c || a == c) {
+                continue;
+            }
+            weldedIndices.put(written++, a);
+            weldedIndices.put(written++, b);
+            weldedIndices.put(written++, c);
+        }
+        weldedIndices.limit(written);
+
+        return new MeshData(weldedPositions, weldedTexCoords, weldedNormals, weldedIndices);
+    }
+
+    private static int hashVertex(FloatBuffer positions, FloatBuffer texCoords, FloatBuffer normals,
+                                  boolean hasNormals, int v) {
+        int h = 0;
+        for (int c = 0; c < 3; c++) {
+            h = h * 31 + bits(positions.get(v * 3 + c));
+            if (hasNormals) {
+                h = h * 31 + bits(normals.get(v * 3 + c));
+            }
+        }
+        h = h * 31 + bits(texCoords.get(v * 2));
+        h = h * 31 + bits(texCoords.get(v * 2 + 1));
+        // spread the low bits, the table is indexed with a mask
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean sameVertex(FloatBuffer positions, FloatBuffer texCoords, FloatBuffer normals,
+                                      boolean hasNormals, int a, int b) {
+        for (int c = 0; c < 3; c++) {
+            if (bits(positions.get(a * 3 + c)) != bits(positions.get(b * 3 + c))) {
+                return false;
+            }
+            if (hasNormals && bits(normals.get(a * 3 + c)) != bits(normals.get(b * 3 + c))) {
+                return false;
+            }
+        }
+        return bits(texCoords.get(a * 2)) == bits(texCoords.get(b * 2))
+                && bits(texCoords.get(a * 2 + 1)) == bits(texCoords.get(b * 2 + 1));
+    }
+
+    private static int bits(float value) {
+        // adding zero folds -0.0 into 0.0 so they weld together
+        return Float.floatToIntBits(value + 0.0f);
+    }
+}
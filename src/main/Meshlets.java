@@ -0,0 +1,211 @@
+package main;
+
+import org.joml.FrustumIntersection;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits a mesh's full-detail index range into small clusters ("meshlets") with bounds for
+ * culling. Triangles are grouped greedily in index buffer order, so after the vertex cache
+ * pass each meshlet is spatially compact and is simply a contiguous range of the existing
+ * index buffer, drawable without any extra buffers.
+ *
+ * Per meshlet this stores a bounding sphere and a normal cone, all in model space. The cone
+ * test follows the conservative form from meshoptimizer: a meshlet can be skipped when
+ * {@code dot(center - camera, axis) >= cutoff * |center - camera| + radius}.
+ */
+public class Meshlets {
+    public static final int MAX_VERTICES = 64;
+    public static final int MAX_TRIANGLES = 124;
+
+    /** Floats stored per meshlet: sphere center and radius, cone axis and cutoff. */
+    private static final int BOUNDS_STRIDE = 8;
+
+    private final int[] indexOffsets;
+    private final int[] indexCounts;
+    private final float[] bounds;
+
+    public Meshlets(int[] indexOffsets, int[] indexCounts, float[] bounds) {
+        this.indexOffsets = indexOffsets;
+        this.indexCounts = indexCounts;
+        this.bounds = bounds;
+    }
+
+    /** Builds meshlets over the first {@code indexCount} indices of the mesh. */
+    public static Meshlets build(MeshData data, int indexCount) {
+        IntBuffer indices = data.getIndices();
+        FloatBuffer positions = data.getPositions();
+        int triangleCount = indexCount / 3;
+
+        int[] offsets = new int[triangleCount + 1];
+        int[] counts = new int[triangleCount + 1];
+        int meshletCount = 0;
+
+        int[] lastMeshlet = new int[data.getVertexCount()];
+        Arrays.fill(lastMeshlet, -1);
+        int meshletVertices = 0;
+        int meshletTriangles = 0;
+        int meshletStart = 0;
+
+        for (int t = 0; t < triangleCount; t++) {
+            int newVertices = 0;
+            for (int k = 0; k < 3; k++) {
+                if (lastMeshlet[indices.get(t * 3 + k)] != meshletCount) {
+                    newVertices++;
+                }
+            }
+            if (meshletTriangles > 0
+                    && (meshletVertices + newVertices > MAX_VERTICES || meshletTriangles == MAX_TRIANGLES)) {
+                offsets[meshletCount] = meshletStart;
+                counts[meshletCount] = meshletTriangles * 3;
+                meshletCount++;
+                meshletStart = t * 3;
+                meshletVertices = 0;
+                meshletTriangles = 0;
+            }
+            for (int k = 0; k < 3; k++) {
+                int v = indices.get(t * 3 + k);
+                if (lastMeshlet[v] != meshletCount) {
+                    lastMeshlet[v] = meshletCount;
+                    meshletVertices++;
+                }
+            }
+            meshletTriangles++;
+        }
+        if (meshletTriangles > 0) {
+            offsets[meshletCount] = meshletStart;
+            counts[meshletCount] = meshletTriangles * 3;
+            meshletCount++;
+        }
+
+        float[] bounds = new float[meshletCount * BOUNDS_STRIDE];
+        for (int m = 0; m < meshletCount; m++) {
+            computeBounds(indices, positions, offsets[m], counts[m], bounds, m * BOUNDS_STRIDE);
+        }
+        return new Meshlets(Arrays.copyOf(offsets, meshletCount), Arrays.copyOf(counts, meshletCount), bounds);
+    }
+
+    private static void computeBounds(IntBuffer indices, FloatBuffer positions, int offset, int count,
+                                      float[] bounds, int b) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = offset; i < offset + count; i++) {
+            int v = indices.get(i) * 3;
+            minX = Math.min(minX, positions.get(v));
+            minY = Math.min(minY, positions.get(v + 1));
+            minZ = Math.min(minZ, positions.get(v + 2));
+            maxX = Math.max(maxX, positions.get(v));
+            maxY = Math.max(maxY, positions.get(v + 1));
+            maxZ = Math.max(maxZ, positions.get(v + 2));
+        }
+        float cx = (minX + maxX) * 0.5f;
+        float cy = (minY + maxY) * 0.5f;
+        float cz = (minZ + maxZ) * 0.5f;
+
+        float radiusSquared = 0.0f;
+        float axisX = 0.0f, axisY = 0.0f, axisZ = 0.0f;
+        float[] normals = new float[count];
+        int triangles = 0;
+        for (int i = offset; i < offset + count; i += 3) {
+            int v0 = indices.get(i) * 3;
+            int v1 = indices.get(i + 1) * 3;
+            int v2 = indices.get(i + 2) * 3;
+            for (int k = 0; k < 3; k++) {
+                int v = indices.get(i + k) * 3;
+                float dx = positions.get(v) - cx;
+                float dy = positions.get(v + 1) - cy;
+                float dz = positions.get(v + 2) - cz;
+                radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+            }
+
+            float ux = positions.get(v1) - positions.get(v0);
+            float uy = positions.get(v1 + 1) - positions.get(v0 + 1);
+            float uz = positions.get(v1 + 2) - positions.get(v0 + 2);
+            float wx = positions.get(v2) - positions.get(v0);
+            float wy = positions.get(v2 + 1) - positions.get(v0 + 1);
+            float wz = positions.get(v2 + 2) - positions.get(v0 + 2);
+            float nx = uy * wz - uz * wy;
+            float ny = uz * wx - ux * wz;
+            float nz = ux * wy - uy * wx;
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0.0f) {
+                continue;
+            }
+            normals[triangles * 3] = nx / length;
+            normals[triangles * 3 + 1] = ny / length;
+            normals[triangles * 3 + 2] = nz / length;
+            axisX += normals[triangles * 3];
+            axisY += normals[triangles * 3 + 1];
+            axisZ += normals[triangles * 3 + 2];
+            triangles++;
+        }
+
+        bounds[b] = cx;
+        bounds[b + 1] = cy;
+        bounds[b + 2] = cz;
+        bounds[b + 3] = (float) Math.sqrt(radiusSquared);
+
+        float axisLength = (float) Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+        float minDot = axisLength == 0.0f ? -1.0f : 1.0f;
+        if (axisLength > 0.0f) {
+            axisX /= axisLength;
+            axisY /= axisLength;
+            axisZ /= axisLength;
+            for (int t = 0; t < triangles; t++) {
+                minDot = Math.min(minDot,
+                        axisX * normals[t * 3] + axisY * normals[t * 3 + 1] + axisZ * normals[t * 3 + 2]);
+            }
+        }
+        bounds[b + 4] = axisX;
+        bounds[b + 5] = axisY;
+        bounds[b + 6] = axisZ;
+        // normals spread over a hemisphere or more can never be backface culled as a group
+        bounds[b + 7] = minDot <= 0.0f ? 1.0f : (float) Math.sqrt(1.0f - minDot * minDot);
+    }
+
+    public int getCount() {
+        return indexOffsets.length;
+    }
+
+    public int getIndexOffset(int meshlet) {
+        return indexOffsets[meshlet];
+    }
+
+    public int getIndexCount(int meshlet) {
+        return indexCounts[meshlet];
+    }
+
+    int[] getIndexOffsets() {
+        return indexOffsets;
+    }
+
+    int[] getIndexCounts() {
+        return indexCounts;
+    }
+
+    float[] getBounds() {
+        return bounds;
+    }
+
+    /** True if the meshlet's bounding sphere is inside the model-space frustum. */
+    public boolean isInFrustum(int meshlet, FrustumIntersection frustum) {
+        int b = meshlet * BOUNDS_STRIDE;
+        return frustum.testSphere(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3]);
+    }
+
+    /** True if every triangle in the meshlet faces away from a camera at the given model-space position. */
+    public boolean isBackfacing(int meshlet, float cameraX, float cameraY, float cameraZ) {
+        int b = meshlet * BOUNDS_STRIDE;
+        if (bounds[b + 7] >= 1.0f) {
+            return false;
+        }
+        float dx = bounds[b] - cameraX;
+        float dy = bounds[b + 1] - cameraY;
+        float dz = bounds[b + 2] - cameraZ;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return dx * bounds[b + 4] + dy * bounds[b + 5] + dz * bounds[b + 6]
+                >= bounds[b + 7] * distance + bounds[b + 3];
+    }
+}
@@ -0,0 +1,150 @@
+package main;
+
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * Per-object uniform data (model and normal matrix) for every object drawn individually in a frame,
+ * kept in a ring of uniform buffer segments, one per frame in flight. Shaders read it as
+ * <pre>
+ * layout (std140) uniform ObjectData {
+ *     mat4 model;
+ *     mat4 normalMatrix;
+ * };
+ * </pre>
+ * at {@link #BINDING}; each draw selects its object with {@link #bind(int)}. The normal matrix
+ * only has its upper 3x3 filled in and is read by the CPU_NORMAL_MATRIX shader variant.
+ *
+ * Objects are collected on the CPU with {@link #add} and written to the current segment with a
+ * single unsynchronized mapped copy in {@link #upload()}. A fence placed after the frame's draws
+ * is waited on before the segment is written again, so the GPU is never reading what the CPU is
+ * writing.
+ */
+public class ObjectUniformRing {
+    public static final String BLOCK_NAME = "ObjectData";
+    public static final int BINDING = 1;
+
+    private static final int FRAMES_IN_FLIGHT = 3;
+    private static final int OBJECT_SIZE = 128;
+    private static final long FENCE_TIMEOUT_NANOS = 1_000_000_000L;
+
+    private final int bufferId;
+    private final int stride;
+    private final long[] fences = new long[FRAMES_IN_FLIGHT];
+    private int capacity;
+    private int segment;
+    private ByteBuffer staging;
+    private int count;
+    private final Matrix4f normalMatrix = new Matrix4f();
+
+    public ObjectUniformRing() {
+        int alignment = glGetInteger(GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT);
+        stride = (OBJECT_SIZE + alignment - 1) / alignment * alignment;
+        capacity = 256;
+        staging = MemoryUtil.memAlloc(capacity * stride);
+
+        bufferId = glGenBuffers();
+        glBindBuffer(GL_UNIFORM_BUFFER, bufferId);
+        glBufferData(GL_UNIFORM_BUFFER, (long) capacity * stride * FRAMES_IN_FLIGHT, GL_STREAM_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+    }
+
+    /** Starts collecting a new frame's objects. */
+    public void begin() {
+        count = 0;
+    }
+
+    /** Stores an object's model and normal matrix and returns the slot to {@link #bind} it with. */
+    public int add(Matrix4f modelMatrix) {
+        if ((count + 1) * stride > staging.capacity()) {
+            staging = MemoryUtil.memRealloc(staging, staging.capacity() * 2);
+        }
+        modelMatrix.get(count * stride, staging);
+        modelMatrix.normal(normalMatrix).get(count * stride + 64, staging);
+        return count++;
+    }
+
+    /** Copies this frame's objects into the next segment of the ring. */
+    public void upload() {
+        if (count == 0) {
+            return;
+        }
+        if (count > capacity) {
+            grow();
+        }
+        segment = (segment + 1) % FRAMES_IN_FLIGHT;
+        waitForSegment(segment);
+
+        long segmentSize = (long) capacity * stride;
+        glBindBuffer(GL_UNIFORM_BUFFER, bufferId);
+        ByteBuffer mapped = glMapBufferRange(GL_UNIFORM_BUFFER, segment * segmentSize, (long) count * stride,
+                GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT | GL_MAP_UNSYNCHRONIZED_BIT);
+        if (mapped != null) {
+            MemoryUtil.memCopy(MemoryUtil.memAddress(staging), MemoryUtil.memAddress(mapped), (long) count * stride);
+            glUnmapBuffer(GL_UNIFORM_BUFFER);
+        }
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+    }
+
+    /** Points the ObjectData block at the given object of the current frame. */
+    public void bind(int slot) {
+        long segmentSize = (long) capacity * stride;
+        glBindBufferRange(GL_UNIFORM_BUFFER, BINDING, bufferId, segment * segmentSize + (long) slot * stride,
+                OBJECT_SIZE);
+    }
+
+    /** Marks the end of the GPU's use of this frame's segment. Call after the frame's draws. */
+    public void fence() {
+        if (count == 0) {
+            return;
+        }
+        fences[segment] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+
+    private void waitForSegment(int segment) {
+        long fence = fences[segment];
+        if (fence == 0) {
+            return;
+        }
+        int status = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT_NANOS);
+        if (status == GL_TIMEOUT_EXPIRED || status == GL_WAIT_FAILED) {
+            System.err.println("object uniform ring: gave up waiting for the GPU, status " + status);
+        }
+        glDeleteSync(fence);
+        fences[segment] = 0;
+    }
+
+    private void grow() {
+        while (capacity < count) {
+            capacity *= 2;
+        }
+        // reallocating orphans the old storage, so frames still in flight keep their data
+        for (int i = 0; i < FRAMES_IN_FLIGHT; i++) {
+            if (fences[i] != 0) {
+                glDeleteSync(fences[i]);
+                fences[i] = 0;
+            }
+        }
+        glBindBuffer(GL_UNIFORM_BUFFER, bufferId);
+        glBufferData(GL_UNIFORM_BUFFER, (long) capacity * stride * FRAMES_IN_FLIGHT, GL_STREAM_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+    }
+
+    public void cleanUp() {
+        for (long fence : fences) {
+            if (fence != 0) {
+                glDeleteSync(fence);
+            }
+        }
+        glDeleteBuffers(bufferId);
+        MemoryUtil.memFree(staging);
+    }
+}
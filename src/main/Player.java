@@ -24,6 +24,8 @@ public class Player {
     private static final float EPSILON = 0.001f;
 
     private Vector3f position;
+    /** Position at the start of the current tick, the other end of render interpolation. */
+    private final Vector3f previousPosition;
     private Vector3f velocity;
     private Vector3f lastWishDir;
     private float moveSpeed;
@@ -39,6 +41,7 @@ public class Player {
 
     public Player(Vector3f startPosition) {
         this.position = new Vector3f(startPosition);
+        this.previousPosition = new Vector3f(startPosition);
         this.velocity = new Vector3f(0, 0, 0);
         this.lastWishDir = new Vector3f(0, 0, 0);
         this.moveSpeed = DEFAULT_MOVE_SPEED;
@@ -61,6 +64,8 @@ public class Player {
             return;
         }
 
+        previousPosition.set(position);
+
         if (!isCheatFlying) {
             applyGravity(deltaTime);
         }
@@ -68,8 +73,10 @@ public class Player {
         updatePosition(deltaTime);
         updateGroundedState();
 
-        LOGGER.log(Level.FINE, "Update - Position: {0}, Velocity: {1}, Grounded: {2}",
-                new Object[]{position, velocity, isGrounded});
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Update - Position: {0}, Velocity: {1}, Grounded: {2}",
+                    new Object[]{position, velocity, isGrounded});
+        }
     }
 
 
@@ -89,8 +96,7 @@ public class Player {
 
         float accelSpeed = Math.min(addSpeed, accel * deltaTime * wishSpeed);
 
-        Vector3f accelDir = new Vector3f(wishDir).mul(accelSpeed);
-        velocity.add(accelDir);
+        velocity.fma(accelSpeed, wishDir);
     }
 
     public void move(Vector3f wishDir, float deltaTime) {
@@ -121,12 +127,14 @@ public class Player {
 
         limitVelocity(MAX_VELOCITY);
 
-        LOGGER.log(Level.FINE, "Move input - WishDir: {0}, " +
-                        "Grounded: {1}, " +
-                        "Velocity before: {2}, " +
-                        "Velocity after: {3}",
-                new Object[]{wishDir, isGrounded, new Vector3f(velocity),
-                        velocity});
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Move input - WishDir: {0}, " +
+                            "Grounded: {1}, " +
+                            "Velocity before: {2}, " +
+                            "Velocity after: {3}",
+                    new Object[]{wishDir, isGrounded, new Vector3f(velocity),
+                            velocity});
+        }
     }
 
     private void applyGravity(float deltaTime) {
@@ -147,9 +155,11 @@ public class Player {
             return;
         }
 
-        Vector3f movement = new Vector3f(velocity).mul(deltaTime);
-        if (movement.isFinite()) {
-            position.add(movement);
+        float dx = velocity.x * deltaTime;
+        float dy = velocity.y * deltaTime;
+        float dz = velocity.z * deltaTime;
+        if (Float.isFinite(dx) && Float.isFinite(dy) && Float.isFinite(dz)) {
+            position.add(dx, dy, dz);
         } else {
             LOGGER.log(Level.SEVERE, "invalid movement calculated. " +
                             "Velocity: {0}, Delta time: {1}",
@@ -239,9 +249,21 @@ public class Player {
         return new Vector3f(position);
     }
 
+    /** Copies the position into {@code dest} and returns it, for callers that run every frame. */
+    public Vector3f getPosition(Vector3f dest) {
+        return dest.set(position);
+    }
+
+    /** Position at the start of the latest tick. */
+    public Vector3f getPreviousPosition(Vector3f dest) {
+        return dest.set(previousPosition);
+    }
+
     public void setPosition(Vector3f newPosition) {
         if (isValidVector(newPosition)) {
             this.position.set(newPosition);
+            // a teleport, not something to interpolate across
+            this.previousPosition.set(newPosition);
         } else {
             LOGGER.log(Level.SEVERE, "Attempted to set invalid position: {0}", newPosition);
         }
@@ -251,6 +273,10 @@ public class Player {
         return new Vector3f(velocity);
     }
 
+    public Vector3f getVelocity(Vector3f dest) {
+        return dest.set(velocity);
+    }
+
     public void setVelocity(Vector3f newVelocity) {
         if (isValidVector(newVelocity)) {
             this.velocity.set(newVelocity);
@@ -0,0 +1,196 @@
+package main;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL41.*;
+
+/**
+ * On-disk cache of linked program binaries so later launches can skip GLSL compilation.
+ *
+ * Entries are named after a SHA-256 of the final shader sources (defines already injected)
+ * together with the GL vendor, renderer and version strings, so a changed shader or a driver
+ * update simply misses. Each file holds a header (magic, format version, binary format) and the
+ * blob from {@code glGetProgramBinary}. Drivers may still reject a binary they wrote themselves;
+ * such entries are deleted and the caller compiles from source instead.
+ *
+ * Does nothing on contexts without GL 4.1 or ARB_get_program_binary, or that report no binary
+ * formats.
+ */
+public class ProgramBinaryCache {
+    private static final int MAGIC = 0x4D475250; // "PRGM"
+    private static final int VERSION = 1;
+
+    private final Path cacheDir;
+    private final boolean supported;
+    private final String driver;
+    private int hits;
+    private int misses;
+
+    public ProgramBinaryCache(String cacheDir) {
+        this.cacheDir = Paths.get(cacheDir);
+        GLCapabilities capabilities = GL.getCapabilities();
+        supported = (capabilities.OpenGL41 || capabilities.GL_ARB_get_program_binary)
+                && glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        driver = glGetString(GL_VENDOR) + "\n" + glGetString(GL_RENDERER) + "\n" + glGetString(GL_VERSION);
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /** Cache key for a program built from the given final sources on this driver. */
+    public String keyFor(String vertexSource, String fragmentSource) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(driver.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(vertexSource.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fragmentSource.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Creates a program from the cached binary for the key. Returns 0 when there is no entry or
+     * the driver rejects it.
+     */
+    public int load(String key) {
+        if (!supported) {
+            return 0;
+        }
+        Path cacheFile = cacheFileFor(key);
+        if (!Files.isRegularFile(cacheFile)) {
+            misses++;
+            return 0;
+        }
+
+        ByteBuffer binary = null;
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4 * 4).order(ByteOrder.nativeOrder());
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < 16 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return reject(cacheFile, "bad header");
+            }
+            int binaryFormat = header.getInt();
+            int length = header.getInt();
+            if (length <= 0 || length != channel.size() - 16) {
+                return reject(cacheFile, "truncated");
+            }
+
+            binary = MemoryUtil.memAlloc(length);
+            while (binary.hasRemaining() && channel.read(binary) >= 0) {
+            }
+            binary.flip();
+
+            int program = glCreateProgram();
+            glProgramBinary(program, binaryFormat, binary);
+            if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+                glDeleteProgram(program);
+                return reject(cacheFile, "rejected by the driver");
+            }
+            hits++;
+            return program;
+        } catch (IOException e) {
+            return reject(cacheFile, e.getMessage());
+        } finally {
+            if (binary != null) {
+                MemoryUtil.memFree(binary);
+            }
+        }
+    }
+
+    private int reject(Path cacheFile, String reason) {
+        System.err.println("discarding program binary " + cacheFile.getFileName() + ": " + reason);
+        misses++;
+        try {
+            Files.deleteIfExists(cacheFile);
+        } catch (IOException ignored) {
+            // a stale entry that can't be deleted just misses again next time
+        }
+        return 0;
+    }
+
+    /**
+     * Must be called before linking a program that will be passed to {@link #store}, otherwise
+     * some drivers return an empty binary.
+     */
+    public void prepareForLink(int program) {
+        if (supported) {
+            glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        }
+    }
+
+    /** Writes the linked program's binary under the key. */
+    public void store(String key, int program) {
+        if (!supported) {
+            return;
+        }
+        int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16 + length).order(ByteOrder.nativeOrder());
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer writtenLength = stack.mallocInt(1);
+            IntBuffer binaryFormat = stack.mallocInt(1);
+            glGetProgramBinary(program, writtenLength, binaryFormat, buffer.slice(16, length));
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(binaryFormat.get(0)).putInt(writtenLength.get(0));
+            buffer.limit(16 + writtenLength.get(0)).position(0);
+        }
+
+        try {
+            Files.createDirectories(cacheDir);
+            // write to a temporary file first so a crash never leaves a half-written entry behind
+            Path cacheFile = cacheFileFor(key);
+            Path tempFile = Files.createTempFile(cacheDir, key, ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("failed to write program binary " + key + ": " + e.getMessage());
+        }
+    }
+
+    private Path cacheFileFor(String key) {
+        return cacheDir.resolve(key + ".programbinary");
+    }
+
+    /** Programs created from the cache so far. */
+    public int getHits() {
+        return hits;
+    }
+
+    /** Programs that had to be compiled from source because the cache had nothing usable. */
+    public int getMisses() {
+        return misses;
+    }
+}
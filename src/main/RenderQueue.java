@@ -0,0 +1,114 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * A frame's draws as 64-bit sort keys, each with an int the caller uses to find the draw again.
+ * Sorting by key groups draws that share a program, then a VAO, then a texture, so that
+ * submitting in key order through {@link GLStateCache} changes as little state as possible.
+ *
+ * Opaque keys, from the most significant bit:
+ * <pre>
+ *   pass:4 | program:8 | vao:16 | texture:12 | depth:24
+ * </pre>
+ * so opaque draws within one state group go front to back. Transparent draws have to be drawn
+ * back to front regardless of state, so their keys put the inverted depth right after the pass:
+ * <pre>
+ *   pass:4 | ~depth:24 | program:8 | vao:16 | texture:12
+ * </pre>
+ * GL object names are truncated to their field width. A collision only costs a redundant bind,
+ * since the keys decide order and never which program or VAO a draw uses.
+ *
+ * Keys are sorted with an LSD radix sort, one byte per pass. Passes over a byte that is the same
+ * in every key are skipped, which for a typical frame leaves only a few passes.
+ */
+public class RenderQueue {
+    public enum Pass {
+        OPAQUE,
+        TRANSPARENT
+    }
+
+    private static final int DEPTH_BITS = 24;
+    private static final long DEPTH_MAX = (1L << DEPTH_BITS) - 1;
+
+    private long[] keys = new long[256];
+    private int[] values = new int[256];
+    private long[] sortedKeys = new long[256];
+    private int[] sortedValues = new int[256];
+    private final int[] histogram = new int[256];
+    private int size;
+
+    /**
+     * Builds a key. {@code depth} is the distance from the camera divided by the far distance
+     * and is clamped to [0, 1].
+     */
+    public static long makeKey(Pass pass, int program, int vertexArray, int texture, float depth) {
+        long quantizedDepth = (long) (Math.max(0.0f, Math.min(1.0f, depth)) * DEPTH_MAX);
+        long state = ((long) (program & 0xFF) << 28) | ((long) (vertexArray & 0xFFFF) << 12) | (texture & 0xFFF);
+        if (pass == Pass.TRANSPARENT) {
+            return ((long) pass.ordinal() << 60) | ((DEPTH_MAX - quantizedDepth) << 36) | state;
+        }
+        return ((long) pass.ordinal() << 60) | (state << DEPTH_BITS) | quantizedDepth;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(long key, int value) {
+        if (size == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            sortedKeys = new long[capacity];
+            sortedValues = new int[capacity];
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    /** Sorts the queued draws by key, ascending. Draws with equal keys keep their order. */
+    public void sort() {
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(histogram, 0);
+            for (int i = 0; i < size; i++) {
+                histogram[(int) (keys[i] >>> shift) & 0xFF]++;
+            }
+            if (size == 0 || histogram[(int) (keys[0] >>> shift) & 0xFF] == size) {
+                continue;
+            }
+
+            int offset = 0;
+            for (int b = 0; b < 256; b++) {
+                int count = histogram[b];
+                histogram[b] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i++) {
+                int destination = histogram[(int) (keys[i] >>> shift) & 0xFF]++;
+                sortedKeys[destination] = keys[i];
+                sortedValues[destination] = values[i];
+            }
+
+            long[] swapKeys = keys;
+            keys = sortedKeys;
+            sortedKeys = swapKeys;
+            int[] swapValues = values;
+            values = sortedValues;
+            sortedValues = swapValues;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getKey(int index) {
+        return keys[index];
+    }
+
+    public int getValue(int index) {
+        return values[index];
+    }
+}
@@ -0,0 +1,79 @@
+package main;
+
+/** {@link BulkMath} as plain loops, for JVMs without the vector API module. */
+final class ScalarBulkMath extends BulkMath {
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void mulMatrices(float[] left, float[] matrices, float[] dest, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int mi = i * 16;
+            for (int column = 0; column < 16; column += 4) {
+                float x = matrices[mi + column], y = matrices[mi + column + 1];
+                float z = matrices[mi + column + 2], w = matrices[mi + column + 3];
+                for (int row = 0; row < 4; row++) {
+                    dest[mi + column + row] = left[row] * x + left[4 + row] * y
+                            + left[8 + row] * z + left[12 + row] * w;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void transformAabbs(float[] matrices, float[] min, float[] max,
+                               float[] destMin, float[] destMax, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int mi = i * 16;
+            int vi = i * 3;
+            float cx = (min[vi] + max[vi]) * 0.5f, ex = (max[vi] - min[vi]) * 0.5f;
+            float cy = (min[vi + 1] + max[vi + 1]) * 0.5f, ey = (max[vi + 1] - min[vi + 1]) * 0.5f;
+            float cz = (min[vi + 2] + max[vi + 2]) * 0.5f, ez = (max[vi + 2] - min[vi + 2]) * 0.5f;
+            for (int row = 0; row < 3; row++) {
+                float m0 = matrices[mi + row], m1 = matrices[mi + 4 + row], m2 = matrices[mi + 8 + row];
+                float center = m0 * cx + m1 * cy + m2 * cz + matrices[mi + 12 + row];
+                float extent = Math.abs(m0) * ex + Math.abs(m1) * ey + Math.abs(m2) * ez;
+                destMin[vi + row] = center - extent;
+                destMax[vi + row] = center + extent;
+            }
+        }
+    }
+
+    @Override
+    public void transformSpheres(float[] matrices, float[] centers, float[] radii,
+                                 float[] destX, float[] destY, float[] destZ, float[] destRadius,
+                                 int start, int end) {
+        for (int i = start; i < end; i++) {
+            int mi = i * 16;
+            int vi = i * 3;
+            float x = centers[vi], y = centers[vi + 1], z = centers[vi + 2];
+            destX[i] = matrices[mi] * x + matrices[mi + 4] * y + matrices[mi + 8] * z + matrices[mi + 12];
+            destY[i] = matrices[mi + 1] * x + matrices[mi + 5] * y + matrices[mi + 9] * z + matrices[mi + 13];
+            destZ[i] = matrices[mi + 2] * x + matrices[mi + 6] * y + matrices[mi + 10] * z + matrices[mi + 14];
+            float scale0 = lengthSquared(matrices, mi);
+            float scale1 = lengthSquared(matrices, mi + 4);
+            float scale2 = lengthSquared(matrices, mi + 8);
+            destRadius[i] = radii[i] * (float) Math.sqrt(Math.max(scale0, Math.max(scale1, scale2)));
+        }
+    }
+
+    private static float lengthSquared(float[] matrices, int column) {
+        float x = matrices[column], y = matrices[column + 1], z = matrices[column + 2];
+        return x * x + y * y + z * z;
+    }
+
+    @Override
+    public void testSpheres(float[] planes, float[] x, float[] y, float[] z, float[] radius,
+                            boolean[] inside, int start, int end) {
+        for (int i = start; i < end; i++) {
+            boolean in = true;
+            for (int p = 0; p < 24 && in; p += 4) {
+                in = planes[p] * x[i] + planes[p + 1] * y[i] + planes[p + 2] * z[i] + planes[p + 3] >= -radius[i];
+            }
+            inside[i] = in;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package main;
+
+/**
+ * Optional shader features, each compiled in by a {@code #define} of the same name injected
+ * right after the {@code #version} line. A set of features is passed around as a bit mask built
+ * with {@link #bit()}.
+ */
+public enum ShaderFeature {
+    /** Model matrix comes from the per-instance attribute at locations 3-6 instead of ObjectData. */
+    INSTANCING,
+    /** Distance fog towards FrameData's fog color. */
+    FOG,
+    /** Normal matrix is read from ObjectData instead of computing transpose(inverse(model)) per vertex. */
+    CPU_NORMAL_MATRIX,
+    /** Vertices are blended by up to four bone matrices. No mesh supplies bone data yet. */
+    SKINNING;
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public boolean isIn(int features) {
+        return (features & bit()) != 0;
+    }
+
+    public static int mask(ShaderFeature... features) {
+        int mask = 0;
+        for (ShaderFeature feature : features) {
+            mask |= feature.bit();
+        }
+        return mask;
+    }
+}
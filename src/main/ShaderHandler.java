@@ -2,134 +2,325 @@ package main;
 
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
-import org.lwjgl.BufferUtils;
-import org.lwjgl.system.MemoryStack;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
 
+import static org.lwjgl.opengl.ARBParallelShaderCompile.glMaxShaderCompilerThreadsARB;
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR;
 import java.io.IOException;
 import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 
 public class ShaderHandler {
-    private int shaderProgram;
+    private static final String SHADER_DIRECTORY = "shaders";
+    /** Lets the driver pick how many threads to compile on. */
+    private static final int MAX_COMPILER_THREADS = 0xFFFFFFFF;
+
+    private final GLStateCache stateCache = new GLStateCache();
+    private final FrameUniforms frameUniforms = new FrameUniforms();
+    private final ProgramBinaryCache programCache = new ProgramBinaryCache("cache/shaders");
+    private final Map<VariantKey, ShaderProgram> variants = new HashMap<>();
+    private final ShaderProgram sceneProgram;
+    private final ShaderProgram instancedProgram;
+    private ShaderProgram skyboxProgram;
+    private final boolean parallelCompile;
+    private ShaderWatcher watcher;
+    /** Relinked programs waiting to be swapped in together by {@link #update()}. */
+    private final List<PendingProgram> pendingReload = new ArrayList<>();
+
+    /** Identifies one compiled permutation of a vertex/fragment pair. */
+    private record VariantKey(String vertexFile, String fragmentFile, int features) {
+    }
+
+    /** A program whose link was issued but not checked yet; the shaders are 0 if it came from the binary cache. */
+    private record PendingProgram(VariantKey variant, String cacheKey, int programId, int vertexShader, int fragmentShader) {
+    }
 
     public ShaderHandler() {
-        this.shaderProgram = createShaderProgram();
-        if (this.shaderProgram == 0) {
-            throw new RuntimeException("Failed to create shader program");
+        GLCapabilities capabilities = GL.getCapabilities();
+        parallelCompile = capabilities.GL_KHR_parallel_shader_compile || capabilities.GL_ARB_parallel_shader_compile;
+        if (capabilities.GL_KHR_parallel_shader_compile) {
+            glMaxShaderCompilerThreadsKHR(MAX_COMPILER_THREADS);
+        } else if (capabilities.GL_ARB_parallel_shader_compile) {
+            glMaxShaderCompilerThreadsARB(MAX_COMPILER_THREADS);
+        }
+        this.sceneProgram = Material.DEFAULT.getProgram(this);
+        this.instancedProgram = Material.DEFAULT.getInstancedProgram(this);
+    }
+
+    /**
+     * Returns the program for the given sources with the given {@link ShaderFeature} mask,
+     * compiling and linking it the first time this permutation is asked for.
+     */
+    public ShaderProgram getVariant(String vertexFile, String fragmentFile, int features) {
+        VariantKey key = new VariantKey(vertexFile, fragmentFile, features);
+        ShaderProgram program = variants.get(key);
+        if (program == null) {
+            int programId = createShaderProgram(key);
+            if (programId == 0) {
+                throw new RuntimeException("Failed to create shader program " + describeVariant(key));
+            }
+            program = new ShaderProgram(describeVariant(key), programId, stateCache);
+            variants.put(key, program);
         }
-        printActiveUniforms();
+        return program;
+    }
+
+    private static String describeVariant(VariantKey key) {
+        StringBuilder name = new StringBuilder(key.vertexFile()).append('+').append(key.fragmentFile());
+        for (ShaderFeature feature : ShaderFeature.values()) {
+            if (feature.isIn(key.features())) {
+                name.append(' ').append(feature);
+            }
+        }
+        return name.toString();
     }
 
     public int getShaderProgram() {
-        return shaderProgram;
+        return sceneProgram.getProgramId();
+    }
+
+    /** The main scene program, for callers that want to keep typed uniform handles. */
+    public ShaderProgram getSceneProgram() {
+        return sceneProgram;
     }
 
     public void useShaderProgram() {
-        if (shaderProgram <= 0) {
+        if (sceneProgram.getProgramId() <= 0) {
             return;
         }
-        glUseProgram(shaderProgram);
+        stateCache.useProgram(sceneProgram.getProgramId());
     }
 
-    public void printActiveUniforms() {
-        IntBuffer numUniforms = BufferUtils.createIntBuffer(1);
-        glGetProgramiv(shaderProgram, GL_ACTIVE_UNIFORMS, numUniforms);
-        int uniformCount = numUniforms.get(0);
+    /** Variant of the scene program that reads the model matrix from a per-instance attribute. */
+    public void useInstancedShaderProgram() {
+        stateCache.useProgram(instancedProgram.getProgramId());
+    }
+
+    public int getInstancedShaderProgram() {
+        return instancedProgram.getProgramId();
+    }
 
-        IntBuffer size = BufferUtils.createIntBuffer(1);
-        IntBuffer type = BufferUtils.createIntBuffer(1);
+    public ShaderProgram getInstancedProgram() {
+        return instancedProgram;
+    }
 
-        for (int i = 0; i < uniformCount; i++) {
-            String name = glGetActiveUniform(shaderProgram, i, size, type);
-            int location = glGetUniformLocation(shaderProgram, name);
-        }
+    /** Camera, light, fog and sky values shared by every program through one uniform buffer. */
+    public FrameUniforms getFrameUniforms() {
+        return frameUniforms;
+    }
+
+    /** Binding state shared by everything that draws; programs are bound through it too. */
+    public GLStateCache getStateCache() {
+        return stateCache;
+    }
+
+    /** Linked program binaries kept on disk between runs; its hit and miss counts cover this run. */
+    public ProgramBinaryCache getProgramCache() {
+        return programCache;
+    }
+
+    /** Prints the uniforms reflected from the scene program when it was linked. */
+    public void printActiveUniforms() {
+        System.out.println(sceneProgram.getName() + " uniforms: " + sceneProgram.getUniformLocations());
     }
 
+    /**
+     * Starts relinking every variant compiled so far from the shader files. The new programs are
+     * built next to the old ones and only swapped in by {@link #update()} once all of them have
+     * linked, so a broken edit leaves the running shaders untouched. Uniform handles stay valid:
+     * they see the program's new generation and re-resolve their locations on next use.
+     */
     public void reloadShaders() {
+        discardPendingReload();
         try {
-            int newProgram = createShaderProgram();
-            glDeleteProgram(shaderProgram);
-            shaderProgram = newProgram;
+            for (VariantKey key : variants.keySet()) {
+                String vertexSource = injectDefines(loadShaderSource(key.vertexFile()), key.features());
+                String fragmentSource = injectDefines(loadShaderSource(key.fragmentFile()), key.features());
+                String cacheKey = programCache.keyFor(vertexSource, fragmentSource);
+
+                int cached = programCache.load(cacheKey);
+                pendingReload.add(cached != 0
+                        ? new PendingProgram(key, cacheKey, cached, 0, 0)
+                        : startLink(key, cacheKey, vertexSource, fragmentSource));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("shader reload failed: " + e.getMessage());
+            discardPendingReload();
+        }
+    }
 
-            printActiveUniforms();
+    /** Reloads when the watched shader files changed and swaps in finished reloads. Call once per frame. */
+    public void update() {
+        if (watcher != null && watcher.pollChanged()) {
+            reloadShaders();
+        }
+        if (!pendingReload.isEmpty() && isReloadComplete()) {
+            finishReload();
+        }
+    }
 
-            useShaderProgram();
-        } catch (Exception e) {
+    /** Watches the shader directory and reloads from {@link #update()} whenever a file in it changes. */
+    public void startWatching() {
+        if (watcher != null) {
+            return;
+        }
+        try {
+            watcher = new ShaderWatcher(SHADER_DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("shader hot reload disabled: " + e.getMessage());
         }
     }
 
-    private int createShaderProgram() {
-        int vertexShader = compileShader(GL_VERTEX_SHADER, "vertex.glsl");
-        int fragmentShader = compileShader(GL_FRAGMENT_SHADER, "fragment.glsl");
+    private boolean isReloadComplete() {
+        if (!parallelCompile) {
+            // querying the link status below simply waits for the driver
+            return true;
+        }
+        for (PendingProgram pending : pendingReload) {
+            if (pending.vertexShader() != 0 && glGetProgrami(pending.programId(), GL_COMPLETION_STATUS_KHR) == GL_FALSE) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        int program = glCreateProgram();
-        if (program == 0) {
-            return 0;
+    private void finishReload() {
+        List<String> errors = new ArrayList<>();
+        for (PendingProgram pending : pendingReload) {
+            try {
+                finishLink(pending);
+            } catch (IllegalStateException e) {
+                errors.add(e.getMessage());
+            }
         }
 
-        glAttachShader(program, vertexShader);
-        glAttachShader(program, fragmentShader);
-        glLinkProgram(program);
+        if (!errors.isEmpty()) {
+            for (String error : errors) {
+                System.err.println(error);
+            }
+            System.err.println("shader reload failed, keeping the previous programs");
+            for (PendingProgram pending : pendingReload) {
+                glDeleteProgram(pending.programId());
+            }
+            pendingReload.clear();
+            return;
+        }
 
-        if (!checkShaderLinkErrors(program)) {
-            glDeleteProgram(program);
-            return 0;
+        for (PendingProgram pending : pendingReload) {
+            ShaderProgram program = variants.get(pending.variant());
+            glDeleteProgram(program.getProgramId());
+            program.replace(pending.programId());
         }
+        System.out.println("reloaded " + pendingReload.size() + " shader programs");
+        pendingReload.clear();
+        // deleted program names can be handed out again
+        stateCache.invalidate();
+    }
 
-        glDeleteShader(vertexShader);
-        glDeleteShader(fragmentShader);
+    private void discardPendingReload() {
+        for (PendingProgram pending : pendingReload) {
+            if (pending.vertexShader() != 0) {
+                glDeleteShader(pending.vertexShader());
+                glDeleteShader(pending.fragmentShader());
+            }
+            glDeleteProgram(pending.programId());
+        }
+        pendingReload.clear();
+    }
 
-        return program;
+    /**
+     * Loads the program from the binary cache when an entry for these exact sources exists and
+     * the driver accepts it, otherwise compiles and links it and stores the result for next time.
+     * Throws with the compile and link logs if the program doesn't link.
+     */
+    private int createShaderProgram(VariantKey key) {
+        String vertexSource = injectDefines(loadShaderSource(key.vertexFile()), key.features());
+        String fragmentSource = injectDefines(loadShaderSource(key.fragmentFile()), key.features());
+        String cacheKey = programCache.keyFor(vertexSource, fragmentSource);
+
+        int program = programCache.load(cacheKey);
+        if (program != 0) {
+            return program;
+        }
+
+        PendingProgram pending = startLink(key, cacheKey, vertexSource, fragmentSource);
+        finishLink(pending);
+        return pending.programId();
     }
 
-    private int linkProgram(int vertexShader, int fragmentShader) {
+    /**
+     * Issues the compile and link without asking for the result, so with parallel shader
+     * compilation the driver can work on it while frames keep rendering.
+     */
+    private PendingProgram startLink(VariantKey key, String cacheKey, String vertexSource, String fragmentSource) {
         int program = glCreateProgram();
+        if (program == 0) {
+            throw new IllegalStateException(describeVariant(key) + ": glCreateProgram failed");
+        }
+        int vertexShader = compileShader(GL_VERTEX_SHADER, vertexSource);
+        int fragmentShader = compileShader(GL_FRAGMENT_SHADER, fragmentSource);
+
         glAttachShader(program, vertexShader);
         glAttachShader(program, fragmentShader);
+        programCache.prepareForLink(program);
         glLinkProgram(program);
-
-        checkShaderLinkErrors(program);
-
-        return program;
+        return new PendingProgram(key, cacheKey, program, vertexShader, fragmentShader);
     }
 
-    private boolean checkShaderLinkErrors(int program) {
-        IntBuffer success = BufferUtils.createIntBuffer(1);
-        glGetProgramiv(program, GL_LINK_STATUS, success);
-        if (success.get(0) == GL_FALSE) {
-            int len = glGetProgrami(program, GL_INFO_LOG_LENGTH);
-            String log = glGetProgramInfoLog(program, len);
-            return false;
+    /** Checks the result of {@link #startLink}, frees its shaders and caches the binary on success. */
+    private void finishLink(PendingProgram pending) {
+        if (pending.vertexShader() == 0) {
+            // loaded from the binary cache, already validated
+            return;
         }
-        return true;
+        int program = pending.programId();
+        boolean linked = glGetProgrami(program, GL_LINK_STATUS) == GL_TRUE;
+        String log = linked ? null : describeVariant(pending.variant()) + " failed to link:"
+                + shaderLog("vertex", pending.vertexShader())
+                + shaderLog("fragment", pending.fragmentShader())
+                + "\n  link: " + glGetProgramInfoLog(program).trim();
+
+        glDetachShader(program, pending.vertexShader());
+        glDetachShader(program, pending.fragmentShader());
+        glDeleteShader(pending.vertexShader());
+        glDeleteShader(pending.fragmentShader());
+
+        if (!linked) {
+            throw new IllegalStateException(log);
+        }
+        programCache.store(pending.cacheKey(), program);
     }
 
-    private int compileShader(int type, String fileName) {
-        String source = loadShaderSource(fileName);
+    /** The stage's compile log, or nothing if it compiled cleanly. */
+    private static String shaderLog(String stage, int shader) {
+        if (glGetShaderi(shader, GL_COMPILE_STATUS) == GL_TRUE) {
+            return "";
+        }
+        return "\n  " + stage + ": " + glGetShaderInfoLog(shader).trim();
+    }
 
+    private int compileShader(int type, String source) {
         int shader = glCreateShader(type);
         glShaderSource(shader, source);
         glCompileShader(shader);
-
-        int success = glGetShaderi(shader, GL_COMPILE_STATUS);
-        if (success == GL_FALSE) {
-            int len = glGetShaderi(shader, GL_INFO_LOG_LENGTH);
-            throw new IllegalStateException("Shader compilation failed");
-        }
-
         return shader;
     }
 
     private String loadShaderSource(String fileName) {
         try {
-            Path path = Paths.get("shaders", fileName);
+            Path path = Paths.get(SHADER_DIRECTORY, fileName);
             byte[] encoded = Files.readAllBytes(path);
             String source = new String(encoded, StandardCharsets.UTF_8);
             return source;
@@ -138,114 +329,58 @@ public class ShaderHandler {
         }
     }
 
-    private void checkShaderCompileErrors(int shader, String type) {
-        int success = glGetShaderi(shader, GL_COMPILE_STATUS);
-        if (success == GL_FALSE) {
-            int len = glGetShaderi(shader, GL_INFO_LOG_LENGTH);
+    /** Adds a #define per enabled feature right after the #version line, which has to stay first. */
+    private static String injectDefines(String source, int features) {
+        if (features == 0) {
+            return source;
+        }
+        StringBuilder defines = new StringBuilder();
+        for (ShaderFeature feature : ShaderFeature.values()) {
+            if (feature.isIn(features)) {
+                defines.append("#define ").append(feature.name()).append('\n');
+            }
         }
+        int versionEnd = source.startsWith("#version") ? source.indexOf('\n') + 1 : 0;
+        return source.substring(0, versionEnd) + defines + source.substring(versionEnd);
     }
 
     public void setUniform(String name, Matrix4f value) {
-        int location = glGetUniformLocation(shaderProgram, name);
-        if (location != -1) {
-            glUniformMatrix4fv(location, false, value.get(new float[16]));
-        } else {
-            throw new IllegalStateException(name + ": Uniform location is invalid");
-        }
+        setRequired(sceneProgram.mat4(name)).set(value);
     }
 
     public void setUniform(String name, Vector3f value) {
-        int location = glGetUniformLocation(shaderProgram, name);
-        if (location != -1) {
-            glUniform3f(location, value.x, value.y, value.z);
-        } else {
-            throw new IllegalStateException(name + ": Uniform location is invalid");
-        }
+        setRequired(sceneProgram.vec3(name)).set(value);
     }
 
     public void setUniform(String name, float value) {
-        int location = glGetUniformLocation(shaderProgram, name);
-        if (location != -1) {
-            glUniform1f(location, value);
-        } else {
-            throw new IllegalStateException(name + ": Uniform location is invalid");
-        }
-    }
-
-    // For the skybox shader program
-    public void setSkyboxUniform(String name, Matrix4f value) {
-        int location = glGetUniformLocation(skyboxShaderProgram, name);
-        if (location != -1) {
-            glUniformMatrix4fv(location, false, value.get(new float[16]));
-        } else {
-            throw new IllegalStateException(name + ": Skybox uniform location is invalid");
-        }
+        setRequired(sceneProgram.scalar(name)).set(value);
     }
 
-    public void setSkyboxUniform(String name, Vector3f value) {
-        int location = glGetUniformLocation(skyboxShaderProgram, name);
-        if (location != -1) {
-            glUniform3f(location, value.x, value.y, value.z);
-        } else {
-            throw new IllegalStateException(name + ": Skybox uniform location is invalid");
+    /** The name-based setters keep throwing for uniforms the program doesn't have. */
+    private static <T extends Uniform> T setRequired(T uniform) {
+        if (!uniform.isActive()) {
+            throw new IllegalStateException(uniform.getName() + ": Uniform location is invalid");
         }
+        return uniform;
     }
 
-    public void setSkyboxUniform(String name, float value) {
-        int location = glGetUniformLocation(skyboxShaderProgram, name);
-        if (location != -1) {
-            glUniform1f(location, value);
-        } else {
-            throw new IllegalStateException(name + ": Skybox uniform location is invalid");
-        }
-    }
-
-    public void setLightUniforms(Vector3f lightPos, Vector3f viewPos, Vector3f lightColor, Vector3f objectColor) {
-        glUniform3f(glGetUniformLocation(shaderProgram, "lightPos"), lightPos.x, lightPos.y, lightPos.z);
-        glUniform3f(glGetUniformLocation(shaderProgram, "viewPos"), viewPos.x, viewPos.y, viewPos.z);
-        glUniform3f(glGetUniformLocation(shaderProgram, "lightColor"), lightColor.x, lightColor.y, lightColor.z);
-        glUniform3f(glGetUniformLocation(shaderProgram, "objectColor"), objectColor.x, objectColor.y, objectColor.z);
-    }
-
-    public void setFogUniforms(Vector3f fogColor,
-                               float fogStart,
-                               float fogEnd)
-    {
-        glUniform3f(glGetUniformLocation(shaderProgram, "fogColor"),
-                fogColor.x,
-                fogColor.y,
-                fogColor.z);
-        glUniform1f(glGetUniformLocation(shaderProgram, "fogStart"), fogStart);
-        glUniform1f(glGetUniformLocation(shaderProgram, "fogEnd"), fogEnd);
-
-
+    public void createSkyboxShaderProgram(String vertexShaderPath, String fragmentShaderPath) {
+        skyboxProgram = getVariant(vertexShaderPath, fragmentShaderPath, 0);
     }
 
-    public void setSkyColor(Vector3f skyColor) {
-        glUniform3f(glGetUniformLocation(shaderProgram, "skyColor"), skyColor.x, skyColor.y, skyColor.z);
+    public void useSkyboxShaderProgram() {
+        stateCache.useProgram(skyboxProgram.getProgramId());
     }
 
-    private int skyboxShaderProgram;
-
-    public void createSkyboxShaderProgram(String vertexShaderPath, String fragmentShaderPath) {
-        skyboxShaderProgram = createShaderProgram();
-
-        int vertexShader = compileShader(GL_VERTEX_SHADER, vertexShaderPath);
-        int fragmentShader = compileShader(GL_FRAGMENT_SHADER, fragmentShaderPath);
-
-        glAttachShader(skyboxShaderProgram, vertexShader);
-        glAttachShader(skyboxShaderProgram, fragmentShader);
-        glLinkProgram(skyboxShaderProgram);
-
-        if (!checkShaderLinkErrors(skyboxShaderProgram)) {
-            throw new RuntimeException("Skybox shader program linking failed");
+    /**
+     * Stops the shader watcher and frees the frame uniform buffer. The {@link ObjectUniformRing}
+     * belongs to the {@link MeshHandler}, which frees it in its own cleanUp.
+     */
+    public void cleanUp() {
+        if (watcher != null) {
+            watcher.close();
         }
-
-        glDeleteShader(vertexShader);
-        glDeleteShader(fragmentShader);
-    }
-
-    public void useSkyboxShaderProgram() {
-        glUseProgram(skyboxShaderProgram);
+        discardPendingReload();
+        frameUniforms.cleanUp();
     }
 }
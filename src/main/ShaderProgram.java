@@ -0,0 +1,137 @@
+package main;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL31.GL_INVALID_INDEX;
+import static org.lwjgl.opengl.GL31.glGetUniformBlockIndex;
+import static org.lwjgl.opengl.GL31.glUniformBlockBinding;
+
+/**
+ * A linked GL program plus the active uniforms reflected from it at link time. Uniforms are set
+ * through typed {@link Uniform} handles obtained from {@link #mat4}, {@link #vec3} and
+ * {@link #scalar}; asking for the same name twice returns the same handle, and asking for it as a
+ * different type throws.
+ *
+ * When the program is relinked (shader reload) {@link #replace} swaps in the new GL program and
+ * bumps a generation counter, and every handle re-resolves its location on its next use.
+ *
+ * Uniform blocks shared by all programs ({@link FrameUniforms}, {@link ObjectUniformRing}) are
+ * attached to their fixed binding points at link time, so no program needs per-frame calls for
+ * them.
+ */
+public class ShaderProgram {
+    private final String name;
+    private final GLStateCache stateCache;
+    private int programId;
+    private int generation;
+    private final Map<String, Integer> uniformLocations = new HashMap<>();
+    private final Map<String, Integer> uniformTypes = new HashMap<>();
+    private final Map<String, Uniform> handles = new HashMap<>();
+
+    public ShaderProgram(String name, int programId, GLStateCache stateCache) {
+        this.name = name;
+        this.stateCache = stateCache;
+        attach(programId);
+    }
+
+    /** Points this wrapper at a newly linked program. The old one is not deleted here. */
+    public void replace(int programId) {
+        attach(programId);
+    }
+
+    private void attach(int programId) {
+        this.programId = programId;
+        generation++;
+        reflectUniforms();
+        bindUniformBlock(FrameUniforms.BLOCK_NAME, FrameUniforms.BINDING);
+        bindUniformBlock(ObjectUniformRing.BLOCK_NAME, ObjectUniformRing.BINDING);
+    }
+
+    private void bindUniformBlock(String blockName, int binding) {
+        int blockIndex = glGetUniformBlockIndex(programId, blockName);
+        if (blockIndex != GL_INVALID_INDEX) {
+            glUniformBlockBinding(programId, blockIndex, binding);
+        }
+    }
+
+    private void reflectUniforms() {
+        uniformLocations.clear();
+        uniformTypes.clear();
+
+        IntBuffer numUniforms = BufferUtils.createIntBuffer(1);
+        glGetProgramiv(programId, GL_ACTIVE_UNIFORMS, numUniforms);
+        int uniformCount = numUniforms.get(0);
+
+        IntBuffer size = BufferUtils.createIntBuffer(1);
+        IntBuffer type = BufferUtils.createIntBuffer(1);
+
+        for (int i = 0; i < uniformCount; i++) {
+            String uniformName = glGetActiveUniform(programId, i, size, type);
+            int location = glGetUniformLocation(programId, uniformName);
+            // arrays are reported as "name[0]"; look them up by their plain name
+            if (uniformName.endsWith("[0]")) {
+                uniformName = uniformName.substring(0, uniformName.length() - 3);
+            }
+            uniformLocations.put(uniformName, location);
+            uniformTypes.put(uniformName, type.get(0));
+        }
+    }
+
+    public Uniform.Mat4 mat4(String uniformName) {
+        return handle(uniformName, Uniform.Mat4.class, n -> new Uniform.Mat4(this, n));
+    }
+
+    public Uniform.Vec3 vec3(String uniformName) {
+        return handle(uniformName, Uniform.Vec3.class, n -> new Uniform.Vec3(this, n));
+    }
+
+    public Uniform.Scalar scalar(String uniformName) {
+        return handle(uniformName, Uniform.Scalar.class, n -> new Uniform.Scalar(this, n));
+    }
+
+    private <T extends Uniform> T handle(String uniformName, Class<T> type, Function<String, T> factory) {
+        Uniform handle = handles.computeIfAbsent(uniformName, factory);
+        if (!type.isInstance(handle)) {
+            throw new IllegalArgumentException("uniform " + uniformName + " of program " + name + " is already a "
+                    + handle.getClass().getSimpleName() + ", not a " + type.getSimpleName());
+        }
+        return type.cast(handle);
+    }
+
+    /** Location of an active uniform, or -1 if the program has no such uniform (or it was optimized out). */
+    int getUniformLocation(String uniformName) {
+        return uniformLocations.getOrDefault(uniformName, -1);
+    }
+
+    /** GL type of an active uniform, such as GL_FLOAT_MAT4, or 0 if there is none. */
+    int getUniformType(String uniformName) {
+        return uniformTypes.getOrDefault(uniformName, 0);
+    }
+
+    /** Binds the program if it isn't already, so a handle can upload to it. */
+    void bind() {
+        stateCache.useProgram(programId);
+    }
+
+    public int getProgramId() {
+        return programId;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, Integer> getUniformLocations() {
+        return uniformLocations;
+    }
+}
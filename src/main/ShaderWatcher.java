@@ -0,0 +1,78 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the shader directory on a daemon thread and tells the GL thread when it changed.
+ *
+ * Editors tend to save a file as several events (truncate, write, rename), so a change is only
+ * reported once the directory has been quiet for {@link #DEBOUNCE_MILLIS}. The GL thread picks it
+ * up with {@link #pollChanged()}; nothing here touches GL.
+ */
+public class ShaderWatcher {
+    private static final long DEBOUNCE_MILLIS = 150;
+
+    private final WatchService watchService;
+    private final Thread thread;
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    public ShaderWatcher(String directory) throws IOException {
+        Path path = Paths.get(directory);
+        watchService = FileSystems.getDefault().newWatchService();
+        path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+        thread = new Thread(this::watch, "shader-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                drain(key);
+                // keep absorbing events until the directory has settled
+                while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    drain(key);
+                }
+                changed.set(true);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private static void drain(WatchKey key) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                System.err.println("shader watcher: events overflowed, reloading everything");
+            }
+        }
+        key.reset();
+    }
+
+    /** Returns true once per settled burst of changes. */
+    public boolean pollChanged() {
+        return changed.getAndSet(false);
+    }
+
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("shader watcher: failed to close: " + e.getMessage());
+        }
+        thread.interrupt();
+    }
+}
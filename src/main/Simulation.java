@@ -0,0 +1,162 @@
+package main;
+
+import org.joml.Vector3f;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs input handling, player physics and camera orientation on their own thread at a fixed tick
+ * rate, so their cost no longer adds to frame time.
+ *
+ * Input arrives from the main thread through an {@link InputQueue}. After each batch of ticks the
+ * thread writes a {@link SimulationSnapshot} and publishes it through a {@link TripleBuffer}; the
+ * render thread picks up the latest one without ever blocking. Once started, the player and camera
+ * handler belong to this thread and must not be touched from anywhere else.
+ */
+public class Simulation {
+    private static final int MAX_TICKS_PER_UPDATE = 8;
+    /** A stall longer than this (debugger, suspended laptop) is not caught up on. */
+    private static final long MAX_FRAME_NANOS = 250_000_000L;
+
+    private final Player player;
+    private final CameraHandler cameraHandler;
+    private final InputQueue inputQueue;
+    private final TripleBuffer<SimulationSnapshot> snapshots = new TripleBuffer<>(SimulationSnapshot::new);
+    private final Vector3f wishDir = new Vector3f();
+    private final Vector3f forward = new Vector3f();
+    private final Vector3f right = new Vector3f();
+    private final Vector3f playerPosition = new Vector3f();
+    private volatile long stepNanos;
+    private volatile boolean running;
+    private Thread thread;
+    private long tick;
+    // held keys: the latest sample wins
+    private float moveX;
+    private float moveZ;
+
+    public Simulation(Player player, CameraHandler cameraHandler, InputQueue inputQueue, int tickRate) {
+        this.player = player;
+        this.cameraHandler = cameraHandler;
+        this.inputQueue = inputQueue;
+        this.stepNanos = stepNanos(tickRate);
+    }
+
+    /** Sets how many ticks run per second, independently of the render rate. */
+    public void setTickRate(int ticksPerSecond) {
+        stepNanos = stepNanos(ticksPerSecond);
+    }
+
+    private static long stepNanos(int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("tick rate must be positive: " + ticksPerSecond);
+        }
+        return 1_000_000_000L / ticksPerSecond;
+    }
+
+    public void start() {
+        // the render thread needs something to draw before the first tick
+        publish(System.nanoTime(), stepNanos);
+        running = true;
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** The latest published state. Only call from the render thread. */
+    public SimulationSnapshot acquireSnapshot() {
+        return snapshots.acquire();
+    }
+
+    private void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            accumulator += Math.min(now - previous, MAX_FRAME_NANOS);
+            previous = now;
+
+            long step = stepNanos;
+            int ticks = 0;
+            while (accumulator >= step && ticks < MAX_TICKS_PER_UPDATE) {
+                tick(step / 1e9f);
+                accumulator -= step;
+                ticks++;
+            }
+            if (ticks == MAX_TICKS_PER_UPDATE && accumulator >= step) {
+                // the simulation can't keep up; drop the backlog instead of spiralling
+                accumulator %= step;
+            }
+            if (ticks > 0) {
+                publish(now - accumulator, step);
+            }
+            LockSupport.parkNanos(step - accumulator);
+        }
+    }
+
+    private void tick(float deltaTime) {
+        drainInput();
+        cameraHandler.update(player.getPosition(playerPosition));
+
+        wishDir.set(moveX, 0, moveZ);
+        if (wishDir.lengthSquared() > 0) {
+            wishDir.normalize();
+        }
+        forward.set(cameraHandler.getCameraFront()).mul(1, 0, 1).normalize();
+        right.set(forward).cross(0, 1, 0).normalize();
+        float inputX = wishDir.x;
+        float inputZ = wishDir.z;
+        wishDir.set(forward).mul(-inputZ); // Invert the z-component here
+        wishDir.fma(inputX, right);
+
+        player.move(wishDir, deltaTime);
+        player.update(deltaTime);
+        tick++;
+    }
+
+    private void drainInput() {
+        InputSample sample;
+        while ((sample = inputQueue.poll()) != null) {
+            moveX = sample.moveX;
+            moveZ = sample.moveZ;
+            player.setSprinting(sample.sprint);
+            if (sample.toggleCheatFlying) {
+                player.toggleCheatFlying();
+            }
+            if (sample.jump) {
+                player.jump();
+            }
+            if (sample.mouseMoved) {
+                cameraHandler.processMouseMovement(sample.mouseX, sample.mouseY);
+            }
+            inputQueue.release();
+        }
+    }
+
+    private void publish(long tickNanos, long step) {
+        SimulationSnapshot snapshot = snapshots.getWriteBuffer();
+        snapshot.tick = tick;
+        snapshot.tickNanos = tickNanos;
+        snapshot.stepNanos = step;
+        player.getPreviousPosition(snapshot.previousPosition);
+        player.getPosition(snapshot.position);
+        player.getVelocity(snapshot.velocity);
+        snapshot.cameraFront.set(cameraHandler.getCameraFront());
+        snapshot.grounded = player.isGrounded();
+        snapshot.sprinting = player.isSprinting();
+        snapshot.cheatFlying = player.isCheatFlying();
+        snapshots.publish();
+    }
+}
@@ -0,0 +1,61 @@
+package main;
+
+import org.joml.Vector3f;
+
+/**
+ * Simulation state published once per tick for the render thread. Instances are pooled by a
+ * {@link TripleBuffer}; the simulation thread overwrites one completely before publishing it, and
+ * the render thread only reads.
+ */
+public class SimulationSnapshot {
+    /** Number of ticks simulated so far, 0 until the first tick. */
+    long tick;
+    /** {@link System#nanoTime()} of the tick {@link #position} belongs to. */
+    long tickNanos;
+    /** Length of a tick when this snapshot was taken. */
+    long stepNanos;
+    final Vector3f previousPosition = new Vector3f();
+    final Vector3f position = new Vector3f();
+    final Vector3f velocity = new Vector3f();
+    final Vector3f cameraFront = new Vector3f(0, 0, -1);
+    boolean grounded;
+    boolean sprinting;
+    boolean cheatFlying;
+
+    /**
+     * Player position at {@code nowNanos}. Rendering runs one tick behind the simulation and
+     * blends between the last two ticks, so it never has to extrapolate.
+     */
+    public Vector3f getInterpolatedPosition(long nowNanos, Vector3f dest) {
+        float alpha = stepNanos > 0 ? (float) (nowNanos - tickNanos) / stepNanos : 1.0f;
+        return previousPosition.lerp(position, Math.max(0.0f, Math.min(1.0f, alpha)), dest);
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public Vector3f getPosition() {
+        return position;
+    }
+
+    public Vector3f getVelocity() {
+        return velocity;
+    }
+
+    public Vector3f getCameraFront() {
+        return cameraFront;
+    }
+
+    public boolean isGrounded() {
+        return grounded;
+    }
+
+    public boolean isSprinting() {
+        return sprinting;
+    }
+
+    public boolean isCheatFlying() {
+        return cheatFlying;
+    }
+}
@@ -1,7 +1,5 @@
 package main;
 
-import org.joml.Matrix4f;
-import org.joml.Vector3f;
 import org.lwjgl.system.MemoryStack;
 
 import java.nio.FloatBuffer;
@@ -47,35 +45,19 @@ public class Skybox {
         }
     }
 
-    public void render(Matrix4f viewMatrix, Matrix4f projectionMatrix) {
+    /**
+     * Draws the sky cube. {@code skybox_vertex.glsl} and {@code skybox_fragment.glsl} read view,
+     * projection and fog color from the shared FrameData block and drop the view translation
+     * themselves ({@code mat3(view)}), so nothing is uploaded per draw.
+     */
+    public void render() {
         shaderHandler.useSkyboxShaderProgram();
 
-        // Remove translation from the view matrix
-        Matrix4f viewMatrixNoTranslation = new Matrix4f(viewMatrix).setTranslation(0, 0, 0);
-
-        shaderHandler.setSkyboxUniform("viewMatrix", viewMatrixNoTranslation);
-        shaderHandler.setSkyboxUniform("projectionMatrix", projectionMatrix);
-
-        glBindVertexArray(vaoId);
-        glActiveTexture(GL_TEXTURE0);
-        glBindTexture(GL_TEXTURE_CUBE_MAP, textureId);
+        GLStateCache stateCache = shaderHandler.getStateCache();
+        stateCache.bindVertexArray(vaoId);
+        stateCache.bindTexture(0, GL_TEXTURE_CUBE_MAP, textureId);
 
         glDrawArrays(GL_TRIANGLES, 0, 36);
-
-        glBindVertexArray(0);
-    }
-
-    public void setFogColor(Vector3f fogColor) {
-        shaderHandler.setSkyboxUniform("fogColor", fogColor);
-    }
-
-    public void setSkyColor(Vector3f skyColor) {
-        shaderHandler.setSkyboxUniform("skyColor", skyColor);
-    }
-
-    public void setFogStartEnd(float fogStart, float fogEnd) {
-        shaderHandler.setSkyboxUniform("fogStart", fogStart);
-        shaderHandler.setSkyboxUniform("fogEnd", fogEnd);
     }
 
     public void cleanup() {
@@ -0,0 +1,253 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * A frame's work as tasks with dependencies, built once and {@link #execute()}d every frame.
+ *
+ * Every task carries a dependency counter that is reset at the start of a run and counted down as
+ * its dependencies finish; the task that brings it to zero dispatches it, so no thread ever waits
+ * for a dependency. Worker tasks go to the {@link JobSystem}; main-thread tasks (anything touching
+ * GL) are run by the thread calling {@link #execute()}, which sleeps while it has nothing to do.
+ * Parallel tasks split a range into chunks that idle workers steal.
+ *
+ * Executing a graph allocates nothing, so it can sit on the allocation-free frame path.
+ */
+public class TaskGraph {
+    /** Chunks smaller than this aren't worth handing to another worker. */
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /** Body of a parallel task, called with disjoint index ranges, possibly at the same time. */
+    public interface RangeBody {
+        void run(int start, int end);
+    }
+
+    private final JobSystem jobSystem;
+    private final List<Task> tasks = new ArrayList<>();
+    private final List<Task> mainThreadTasks = new ArrayList<>();
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private volatile Throwable failure;
+    private volatile Thread executingThread;
+
+    public TaskGraph(JobSystem jobSystem) {
+        this.jobSystem = jobSystem;
+    }
+
+    /** Adds a task run on a worker once all of its dependencies have finished. */
+    public Task add(String name, Runnable body, Task... dependencies) {
+        return register(new Task(name, body, null, null, false), dependencies);
+    }
+
+    /** Adds a task run on the thread that executes the graph; use it for anything that calls GL. */
+    public Task addMainThread(String name, Runnable body, Task... dependencies) {
+        return register(new Task(name, body, null, null, true), dependencies);
+    }
+
+    /**
+     * Adds a task that runs {@code body} over {@code 0..size} split into chunks across the
+     * workers. The size is read when the task starts, after its dependencies have finished.
+     */
+    public Task addParallel(String name, IntSupplier size, RangeBody body, Task... dependencies) {
+        return register(new Task(name, null, size, body, false), dependencies);
+    }
+
+    private Task register(Task task, Task... dependencies) {
+        for (Task dependency : dependencies) {
+            if (dependency.graph() != this) {
+                throw new IllegalArgumentException(task.name + ": dependency " + dependency.name + " is from another graph");
+            }
+            dependency.dependents.add(task);
+            task.dependencyCount++;
+        }
+        tasks.add(task);
+        if (task.mainThread) {
+            mainThreadTasks.add(task);
+        }
+        return task;
+    }
+
+    /**
+     * Runs every task once, in dependency order, and returns when all have finished. If a task
+     * throws, the tasks that haven't started yet are skipped and the failure is rethrown here.
+     */
+    public void execute() {
+        executingThread = Thread.currentThread();
+        failure = null;
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            task.remaining.set(task.dependencyCount);
+            task.ready = false;
+        }
+        unfinished.set(tasks.size());
+
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            if (task.dependencyCount == 0) {
+                dispatch(task);
+            }
+        }
+
+        while (unfinished.get() > 0) {
+            boolean ranAny = false;
+            for (int i = 0; i < mainThreadTasks.size(); i++) {
+                Task task = mainThreadTasks.get(i);
+                if (task.ready) {
+                    task.ready = false;
+                    run(task);
+                    ranAny = true;
+                }
+            }
+            if (!ranAny && unfinished.get() > 0) {
+                // woken by every finished task; a spurious wakeup just rescans
+                LockSupport.park(this);
+            }
+        }
+        executingThread = null;
+        awaitWorkerActions();
+
+        Throwable failed = failure;
+        if (failed != null) {
+            throw new IllegalStateException("frame task failed", failed);
+        }
+    }
+
+    /**
+     * A worker task counts as finished once its body is done, but its {@link RecursiveAction}
+     * only completes after {@code compute()} returns. Reinitializing it before that would let the
+     * late completion mark the next frame's run as done before it starts, and the frame would
+     * never finish, so wait for those last few instructions here.
+     */
+    private void awaitWorkerActions() {
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            while (!task.mainThread && !task.action.isDone()) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private void dispatch(Task task) {
+        if (task.mainThread) {
+            task.ready = true;
+            LockSupport.unpark(executingThread);
+        } else {
+            task.action.reinitialize();
+            jobSystem.getPool().execute(task.action);
+        }
+    }
+
+    private void run(Task task) {
+        try {
+            if (failure == null) {
+                if (task.body != null) {
+                    task.body.run();
+                } else {
+                    runParallel(task);
+                }
+            }
+        } catch (Throwable t) {
+            if (failure == null) {
+                failure = new IllegalStateException(task.name + " failed", t);
+            }
+        } finally {
+            for (int i = 0; i < task.dependents.size(); i++) {
+                Task dependent = task.dependents.get(i);
+                if (dependent.remaining.decrementAndGet() == 0) {
+                    dispatch(dependent);
+                }
+            }
+            unfinished.decrementAndGet();
+            LockSupport.unpark(executingThread);
+        }
+    }
+
+    /** Forks all chunks but the first, runs that one here and helps with the rest while joining. */
+    private void runParallel(Task task) {
+        int size = task.size.getAsInt();
+        if (size <= 0) {
+            return;
+        }
+        int maxChunks = jobSystem.getWorkerCount() * CHUNKS_PER_WORKER;
+        int chunkCount = Math.max(1, Math.min(maxChunks, size / MIN_CHUNK_SIZE));
+        if (task.chunks.length < chunkCount) {
+            task.chunks = new RangeAction[maxChunks];
+            for (int i = 0; i < maxChunks; i++) {
+                task.chunks[i] = new RangeAction(task.rangeBody);
+            }
+        }
+        for (int i = 1; i < chunkCount; i++) {
+            RangeAction chunk = task.chunks[i];
+            chunk.reinitialize();
+            chunk.start = (int) ((long) size * i / chunkCount);
+            chunk.end = (int) ((long) size * (i + 1) / chunkCount);
+            chunk.fork();
+        }
+        task.rangeBody.run(0, size / chunkCount);
+        for (int i = 1; i < chunkCount; i++) {
+            task.chunks[i].join();
+        }
+    }
+
+    /** Handle to one node of the graph, used to declare dependencies on it. */
+    public final class Task {
+        private final String name;
+        private final Runnable body;
+        private final IntSupplier size;
+        private final RangeBody rangeBody;
+        private final boolean mainThread;
+        private final List<Task> dependents = new ArrayList<>();
+        private int dependencyCount;
+        private final AtomicInteger remaining = new AtomicInteger();
+        private volatile boolean ready;
+        private final RecursiveAction action = new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                run(Task.this);
+            }
+        };
+        private RangeAction[] chunks = new RangeAction[0];
+
+        private Task(String name, Runnable body, IntSupplier size, RangeBody rangeBody, boolean mainThread) {
+            this.name = name;
+            this.body = body;
+            this.size = size;
+            this.rangeBody = rangeBody;
+            this.mainThread = mainThread;
+        }
+
+        private TaskGraph graph() {
+            return TaskGraph.this;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // never serialized, so the body doesn't need to be Serializable
+        @SuppressWarnings("serial")
+        private final RangeBody body;
+        private int start;
+        private int end;
+
+        RangeAction(RangeBody body) {
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            body.run(start, end);
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package main;
+
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+
+/**
+ * Transforms of every object in the scene, stored as structure-of-arrays: positions, rotation
+ * quaternions, scales and local and world matrices each live in one contiguous {@code float[]}, so
+ * a batch update streams through memory instead of chasing a {@code Matrix4f} and three
+ * {@code Vector3f}s per object.
+ *
+ * Objects are addressed by handles that stay valid until {@link #destroy}ed. Live transforms are
+ * kept packed at the front of the arrays, and handles find their slot through an indirection
+ * table. A handle carries a generation, so a stale handle to a reused slot is detected instead of
+ * silently addressing another object.
+ *
+ * Transforms form a scene graph: each may have a parent, and its world matrix is the parent's
+ * world matrix times its own local matrix. Slots are kept ordered so that a parent always comes
+ * before its children, which lets {@link #propagateWorldMatrices} resolve the whole hierarchy in
+ * one forward pass. Setters only mark a transform dirty; the pass recomputes dirty transforms and
+ * everything below them, and skips every subtree in which nothing changed.
+ *
+ * A local matrix is either composed from position, rotation and scale by
+ * {@link #updateLocalMatrices}, or set directly with {@link #setLocalMatrix}. A frame runs
+ * {@link #updateLocalMatrices} over all slots, then {@link #propagateWorldMatrices}. Setters and
+ * the propagation pass are for one thread at a time; disjoint ranges of
+ * {@link #updateLocalMatrices} may run on different threads.
+ */
+public class TransformStore {
+    /** Parent handle of a transform that hangs directly off the world. */
+    public static final int NO_PARENT = -1;
+
+    private static final int INDEX_BITS = 20;
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;
+
+    // per-slot flags
+    private static final byte COMPOSED = 1;
+    private static final byte DIRTY = 2;
+    private static final byte WORLD_CHANGED = 4;
+
+    // dense, indexed by slot
+    private float[] positions;
+    private float[] rotations;
+    private float[] scales;
+    private float[] localMatrices;
+    private float[] worldMatrices;
+    private byte[] flags;
+    private int[] parentSlots;
+    private int[] childCounts;
+    private int[] handleIndexOfSlot;
+    private int size;
+
+    // sparse, indexed by the handle's index bits
+    private int[] slotOfHandle;
+    private int[] generations;
+    private int[] freeHandles;
+    private int freeCount;
+    private int handleCount;
+
+    private int recomputedCount;
+    private int skippedCount;
+
+    public TransformStore(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        allocateSlots(capacity);
+        slotOfHandle = new int[capacity];
+        generations = new int[capacity];
+        freeHandles = new int[capacity];
+    }
+
+    /** Adds an identity transform without a parent and returns its handle. */
+    public int create() {
+        int index;
+        if (freeCount > 0) {
+            index = freeHandles[--freeCount];
+        } else {
+            if (handleCount > INDEX_MASK) {
+                throw new IllegalStateException("transform store is full");
+            }
+            index = handleCount++;
+            if (index >= slotOfHandle.length) {
+                growHandles();
+            }
+        }
+        if (size == flags.length) {
+            growSlots();
+        }
+
+        int slot = size++;
+        slotOfHandle[index] = slot;
+        handleIndexOfSlot[slot] = index;
+        positions[slot * 3] = 0;
+        positions[slot * 3 + 1] = 0;
+        positions[slot * 3 + 2] = 0;
+        rotations[slot * 4] = 0;
+        rotations[slot * 4 + 1] = 0;
+        rotations[slot * 4 + 2] = 0;
+        rotations[slot * 4 + 3] = 1;
+        scales[slot * 3] = 1;
+        scales[slot * 3 + 1] = 1;
+        scales[slot * 3 + 2] = 1;
+        setIdentity(localMatrices, slot * 16);
+        setIdentity(worldMatrices, slot * 16);
+        flags[slot] = DIRTY;
+        parentSlots[slot] = -1;
+        childCounts[slot] = 0;
+        return handleOfSlot(slot);
+    }
+
+    /**
+     * Removes a transform. Its handle, and any copy of it, becomes invalid. Its children are
+     * detached and keep their local transform, which from then on is relative to the world.
+     */
+    public void destroy(int handle) {
+        int slot = slotOf(handle);
+        int index = handle & INDEX_MASK;
+        int last = size - 1;
+        if (parentSlots[slot] >= 0) {
+            childCounts[parentSlots[slot]]--;
+        }
+        if (childCounts[slot] == 0 && parentSlots[last] < slot) {
+            // moving the last slot here keeps it behind its parent, so the cheap swap will do
+            if (slot != last) {
+                copySlot(last, slot);
+                slotOfHandle[handleIndexOfSlot[slot]] = slot;
+            }
+            size--;
+        } else {
+            int[] order = new int[last];
+            for (int i = 0, s = 0; s < size; s++) {
+                if (s != slot) {
+                    order[i++] = s;
+                }
+            }
+            reorder(order);
+        }
+        generations[index] = (generations[index] + 1) & GENERATION_MASK;
+        freeHandles[freeCount++] = index;
+    }
+
+    public boolean isValid(int handle) {
+        int index = handle & INDEX_MASK;
+        return handle >= 0 && index < handleCount && generations[index] == handle >>> INDEX_BITS
+                && slotOfHandle[index] < size && handleIndexOfSlot[slotOfHandle[index]] == index;
+    }
+
+    private int slotOf(int handle) {
+        if (!isValid(handle)) {
+            throw new IllegalArgumentException("stale or invalid transform handle " + handle);
+        }
+        return slotOfHandle[handle & INDEX_MASK];
+    }
+
+    private int handleOfSlot(int slot) {
+        int index = handleIndexOfSlot[slot];
+        return generations[index] << INDEX_BITS | index;
+    }
+
+    /**
+     * Attaches {@code child} to {@code parent}, or detaches it with {@link #NO_PARENT}. The child's
+     * local transform is kept, so it jumps to the same offset from its new parent.
+     *
+     * @throws IllegalArgumentException if {@code parent} is {@code child} or one of its descendants
+     */
+    public void setParent(int child, int parent) {
+        int slot = slotOf(child);
+        int parentSlot = parent == NO_PARENT ? -1 : slotOf(parent);
+        for (int s = parentSlot; s >= 0; s = parentSlots[s]) {
+            if (s == slot) {
+                throw new IllegalArgumentException("transform " + parent + " is a descendant of " + child);
+            }
+        }
+        if (parentSlots[slot] >= 0) {
+            childCounts[parentSlots[slot]]--;
+        }
+        parentSlots[slot] = parentSlot;
+        if (parentSlot >= 0) {
+            childCounts[parentSlot]++;
+        }
+        flags[slot] |= DIRTY;
+        if (parentSlot > slot) {
+            moveSubtreeToEnd(slot);
+        }
+    }
+
+    /** Handle of the transform's parent, or {@link #NO_PARENT}. */
+    public int getParent(int handle) {
+        int parentSlot = parentSlots[slotOf(handle)];
+        return parentSlot < 0 ? NO_PARENT : handleOfSlot(parentSlot);
+    }
+
+    public void setPosition(int handle, float x, float y, float z) {
+        int slot = slotOf(handle);
+        positions[slot * 3] = x;
+        positions[slot * 3 + 1] = y;
+        positions[slot * 3 + 2] = z;
+        flags[slot] |= COMPOSED | DIRTY;
+    }
+
+    /** Position relative to the parent. */
+    public Vector3f getPosition(int handle, Vector3f dest) {
+        int slot = slotOf(handle);
+        return dest.set(positions[slot * 3], positions[slot * 3 + 1], positions[slot * 3 + 2]);
+    }
+
+    /** Sets the rotation from a unit quaternion. */
+    public void setRotation(int handle, float x, float y, float z, float w) {
+        int slot = slotOf(handle);
+        rotations[slot * 4] = x;
+        rotations[slot * 4 + 1] = y;
+        rotations[slot * 4 + 2] = z;
+        rotations[slot * 4 + 3] = w;
+        flags[slot] |= COMPOSED | DIRTY;
+    }
+
+    /** Sets the rotation from Euler angles in degrees, applied about X, then Y, then Z. */
+    public void setRotationEuler(int handle, float xDegrees, float yDegrees, float zDegrees) {
+        double halfX = Math.toRadians(xDegrees) * 0.5;
+        double halfY = Math.toRadians(yDegrees) * 0.5;
+        double halfZ = Math.toRadians(zDegrees) * 0.5;
+        float sx = (float) Math.sin(halfX), cx = (float) Math.cos(halfX);
+        float sy = (float) Math.sin(halfY), cy = (float) Math.cos(halfY);
+        float sz = (float) Math.sin(halfZ), cz = (float) Math.cos(halfZ);
+        float cycz = cy * cz, sysz = sy * sz, sycz = sy * cz, cysz = cy * sz;
+        setRotation(handle,
+                sx * cycz + cx * sysz,
+                cx * sycz - sx * cysz,
+                cx * cysz + sx * sycz,
+                cx * cycz - sx * sysz);
+    }
+
+    public void setScale(int handle, float x, float y, float z) {
+        int slot = slotOf(handle);
+        scales[slot * 3] = x;
+        scales[slot * 3 + 1] = y;
+        scales[slot * 3 + 2] = z;
+        flags[slot] |= COMPOSED | DIRTY;
+    }
+
+    /**
+     * Sets the matrix relative to the parent directly; position, rotation and scale are ignored
+     * until set again. For a transform without a parent this is its world matrix.
+     */
+    public void setLocalMatrix(int handle, Matrix4fc localMatrix) {
+        int slot = slotOf(handle);
+        localMatrix.get(localMatrices, slot * 16);
+        flags[slot] = (byte) (flags[slot] & ~COMPOSED | DIRTY);
+    }
+
+    /** World matrix as of the last {@link #propagateWorldMatrices} or {@link #updateWorldMatrix}. */
+    public Matrix4f getWorldMatrix(int handle, Matrix4f dest) {
+        return dest.set(worldMatrices, slotOf(handle) * 16);
+    }
+
+    /** Copies the world matrix into {@code dest} at {@code offset}, column-major, for {@link BulkMath}. */
+    public void getWorldMatrix(int handle, float[] dest, int offset) {
+        System.arraycopy(worldMatrices, slotOf(handle) * 16, dest, offset, 16);
+    }
+
+    /**
+     * Brings one transform's world matrix up to date right away, along with its ancestors'. Its
+     * children are left for the next {@link #propagateWorldMatrices}, which still sees it as dirty.
+     */
+    public void updateWorldMatrix(int handle) {
+        updateSlot(slotOf(handle));
+    }
+
+    private void updateSlot(int slot) {
+        int parentSlot = parentSlots[slot];
+        if (parentSlot >= 0) {
+            updateSlot(parentSlot);
+        }
+        if ((flags[slot] & (COMPOSED | DIRTY)) == (COMPOSED | DIRTY)) {
+            composeLocal(slot);
+        }
+        computeWorld(slot, parentSlot);
+    }
+
+    /**
+     * Recomposes the local matrices of dirty slots {@code start} to {@code end} from position,
+     * rotation and scale. Clean slots and slots whose matrix was set directly are left alone. Only
+     * writes those slots' local matrices, so disjoint ranges can run in parallel.
+     */
+    public void updateLocalMatrices(int start, int end) {
+        byte[] f = flags;
+        for (int slot = start; slot < end; slot++) {
+            if ((f[slot] & (COMPOSED | DIRTY)) == (COMPOSED | DIRTY)) {
+                composeLocal(slot);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the world matrix of every dirty transform and of everything below it, in one pass
+     * in parent-before-child order, and clears the dirty flags. Subtrees where nothing changed are
+     * skipped. Must run after {@link #updateLocalMatrices} has covered all slots.
+     */
+    public void propagateWorldMatrices() {
+        byte[] f = flags;
+        int[] parents = parentSlots;
+        int recomputed = 0;
+        for (int slot = 0; slot < size; slot++) {
+            int parentSlot = parents[slot];
+            boolean changed = (f[slot] & DIRTY) != 0
+                    || parentSlot >= 0 && (f[parentSlot] & WORLD_CHANGED) != 0;
+            if (changed) {
+                computeWorld(slot, parentSlot);
+                f[slot] = (byte) (f[slot] & COMPOSED | WORLD_CHANGED);
+                recomputed++;
+            } else {
+                f[slot] &= COMPOSED;
+            }
+        }
+        recomputedCount = recomputed;
+        skippedCount = size - recomputed;
+    }
+
+    /** True if the last {@link #propagateWorldMatrices} changed this transform's world matrix. */
+    public boolean hasWorldChanged(int handle) {
+        return (flags[slotOf(handle)] & WORLD_CHANGED) != 0;
+    }
+
+    /** World matrices the last {@link #propagateWorldMatrices} had to recompute. */
+    public int getRecomputedCount() {
+        return recomputedCount;
+    }
+
+    /** World matrices the last {@link #propagateWorldMatrices} found unchanged. */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /** Number of live transforms, the range {@link #updateLocalMatrices} works on. */
+    public int size() {
+        return size;
+    }
+
+    private void composeLocal(int slot) {
+        float[] p = positions;
+        float[] r = rotations;
+        float[] s = scales;
+        float[] m = localMatrices;
+        int ri = slot * 4;
+        float qx = r[ri], qy = r[ri + 1], qz = r[ri + 2], qw = r[ri + 3];
+        float xx = qx * qx, yy = qy * qy, zz = qz * qz;
+        float xy = qx * qy, xz = qx * qz, yz = qy * qz;
+        float xw = qx * qw, yw = qy * qw, zw = qz * qw;
+        int si = slot * 3;
+        float sx = s[si], sy = s[si + 1], sz = s[si + 2];
+
+        // column-major: translation * rotation * scale
+        int mi = slot * 16;
+        m[mi] = (1 - 2 * (yy + zz)) * sx;
+        m[mi + 1] = 2 * (xy + zw) * sx;
+        m[mi + 2] = 2 * (xz - yw) * sx;
+        m[mi + 3] = 0;
+        m[mi + 4] = 2 * (xy - zw) * sy;
+        m[mi + 5] = (1 - 2 * (xx + zz)) * sy;
+        m[mi + 6] = 2 * (yz + xw) * sy;
+        m[mi + 7] = 0;
+        m[mi + 8] = 2 * (xz + yw) * sz;
+        m[mi + 9] = 2 * (yz - xw) * sz;
+        m[mi + 10] = (1 - 2 * (xx + yy)) * sz;
+        m[mi + 11] = 0;
+        m[mi + 12] = p[si];
+        m[mi + 13] = p[si + 1];
+        m[mi + 14] = p[si + 2];
+        m[mi + 15] = 1;
+    }
+
+    /** world = parent world * local, both column-major. */
+    private void computeWorld(int slot, int parentSlot) {
+        float[] l = localMatrices;
+        float[] w = worldMatrices;
+        int li = slot * 16;
+        if (parentSlot < 0) {
+            System.arraycopy(l, li, w, li, 16);
+            return;
+        }
+        int pi = parentSlot * 16;
+        for (int column = 0; column < 16; column += 4) {
+            float x = l[li + column], y = l[li + column + 1], z = l[li + column + 2], t = l[li + column + 3];
+            for (int row = 0; row < 4; row++) {
+                w[li + column + row] = w[pi + row] * x + w[pi + 4 + row] * y
+                        + w[pi + 8 + row] * z + w[pi + 12 + row] * t;
+            }
+        }
+    }
+
+    /**
+     * Moves the subtree rooted at {@code root} behind every other slot, keeping its internal order,
+     * after it was attached to a parent that sits further back.
+     */
+    private void moveSubtreeToEnd(int root) {
+        boolean[] inSubtree = new boolean[size];
+        inSubtree[root] = true;
+        for (int s = root + 1; s < size; s++) {
+            int parentSlot = parentSlots[s];
+            inSubtree[s] = parentSlot >= 0 && inSubtree[parentSlot];
+        }
+        int[] order = new int[size];
+        int n = 0;
+        for (int s = 0; s < size; s++) {
+            if (!inSubtree[s]) {
+                order[n++] = s;
+            }
+        }
+        for (int s = root; s < size; s++) {
+            if (inSubtree[s]) {
+                order[n++] = s;
+            }
+        }
+        reorder(order);
+    }
+
+    /**
+     * Rebuilds the dense arrays so that new slot {@code i} holds old slot {@code order[i]}. Slots
+     * left out are dropped, and children of dropped slots lose their parent. Linear in the number
+     * of transforms, which is fine for the hierarchy edits and removals that need it.
+     */
+    private void reorder(int[] order) {
+        int[] newSlotOf = new int[size];
+        Arrays.fill(newSlotOf, -1);
+        for (int i = 0; i < order.length; i++) {
+            newSlotOf[order[i]] = i;
+        }
+
+        float[] oldPositions = positions, oldRotations = rotations, oldScales = scales;
+        float[] oldLocal = localMatrices, oldWorld = worldMatrices;
+        byte[] oldFlags = flags;
+        int[] oldParents = parentSlots, oldHandles = handleIndexOfSlot;
+        allocateSlots(oldFlags.length);
+        for (int i = 0; i < order.length; i++) {
+            int old = order[i];
+            System.arraycopy(oldPositions, old * 3, positions, i * 3, 3);
+            System.arraycopy(oldRotations, old * 4, rotations, i * 4, 4);
+            System.arraycopy(oldScales, old * 3, scales, i * 3, 3);
+            System.arraycopy(oldLocal, old * 16, localMatrices, i * 16, 16);
+            System.arraycopy(oldWorld, old * 16, worldMatrices, i * 16, 16);
+            flags[i] = oldFlags[old];
+            int parentSlot = oldParents[old] < 0 ? -1 : newSlotOf[oldParents[old]];
+            if (parentSlot < 0 && oldParents[old] >= 0) {
+                flags[i] |= DIRTY;
+            }
+            parentSlots[i] = parentSlot;
+            if (parentSlot >= 0) {
+                childCounts[parentSlot]++;
+            }
+            handleIndexOfSlot[i] = oldHandles[old];
+            slotOfHandle[oldHandles[old]] = i;
+        }
+        size = order.length;
+    }
+
+    private void copySlot(int from, int to) {
+        System.arraycopy(positions, from * 3, positions, to * 3, 3);
+        System.arraycopy(rotations, from * 4, rotations, to * 4, 4);
+        System.arraycopy(scales, from * 3, scales, to * 3, 3);
+        System.arraycopy(localMatrices, from * 16, localMatrices, to * 16, 16);
+        System.arraycopy(worldMatrices, from * 16, worldMatrices, to * 16, 16);
+        flags[to] = flags[from];
+        parentSlots[to] = parentSlots[from];
+        childCounts[to] = childCounts[from];
+        handleIndexOfSlot[to] = handleIndexOfSlot[from];
+    }
+
+    private static void setIdentity(float[] matrices, int offset) {
+        Arrays.fill(matrices, offset, offset + 16, 0);
+        matrices[offset] = 1;
+        matrices[offset + 5] = 1;
+        matrices[offset + 10] = 1;
+        matrices[offset + 15] = 1;
+    }
+
+    private void allocateSlots(int capacity) {
+        positions = new float[capacity * 3];
+        rotations = new float[capacity * 4];
+        scales = new float[capacity * 3];
+        localMatrices = new float[capacity * 16];
+        worldMatrices = new float[capacity * 16];
+        flags = new byte[capacity];
+        parentSlots = new int[capacity];
+        childCounts = new int[capacity];
+        handleIndexOfSlot = new int[capacity];
+    }
+
+    private void growSlots() {
+        int capacity = flags.length * 2;
+        positions = Arrays.copyOf(positions, capacity * 3);
+        rotations = Arrays.copyOf(rotations, capacity * 4);
+        scales = Arrays.copyOf(scales, capacity * 3);
+        localMatrices = Arrays.copyOf(localMatrices, capacity * 16);
+        worldMatrices = Arrays.copyOf(worldMatrices, capacity * 16);
+        flags = Arrays.copyOf(flags, capacity);
+        parentSlots = Arrays.copyOf(parentSlots, capacity);
+        childCounts = Arrays.copyOf(childCounts, capacity);
+        handleIndexOfSlot = Arrays.copyOf(handleIndexOfSlot, capacity);
+    }
+
+    private void growHandles() {
+        int capacity = slotOfHandle.length * 2;
+        slotOfHandle = Arrays.copyOf(slotOfHandle, capacity);
+        generations = Arrays.copyOf(generations, capacity);
+        freeHandles = Arrays.copyOf(freeHandles, capacity);
+    }
+}
@@ -0,0 +1,52 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free single-producer, single-consumer triple buffer. The writer fills its own buffer and
+ * {@link #publish()}es it; the reader {@link #acquire()}s the latest published buffer. Neither side
+ * ever waits for the other, and the reader never sees a buffer the writer is still filling.
+ *
+ * Three preallocated instances rotate between the roles of write, spare and read buffer. The
+ * spare's index and a "fresh" bit live in one atomic int, so handing a buffer over is a single
+ * exchange on either side.
+ */
+public class TripleBuffer<T> {
+    private static final int FRESH = 1 << 2;
+    private static final int INDEX_MASK = 3;
+
+    private final Object[] buffers = new Object[3];
+    private final AtomicInteger spare = new AtomicInteger(2);
+    private int writeIndex = 0;
+    private int readIndex = 1;
+
+    public TripleBuffer(Supplier<T> factory) {
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = factory.get();
+        }
+    }
+
+    /** The buffer the writer may fill. Only call from the writing thread. */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T) buffers[writeIndex];
+    }
+
+    /** Hands the write buffer to the reader and takes the spare to write into next. */
+    public void publish() {
+        writeIndex = spare.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the most recently published buffer, or the same one as last time if nothing new was
+     * published. Only call from the reading thread; the result stays valid until the next call.
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if ((spare.get() & FRESH) != 0) {
+            readIndex = spare.getAndSet(readIndex) & INDEX_MASK;
+        }
+        return (T) buffers[readIndex];
+    }
+}
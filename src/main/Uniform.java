@@ -0,0 +1,129 @@
+package main;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL20.*;
+
+/**
+ * Typed handle to one uniform of a {@link ShaderProgram}. The location is resolved from the
+ * program's link-time reflection and re-resolved whenever the program is relinked. Each handle
+ * keeps a shadow copy of the last value it uploaded and skips uploads that would not change
+ * anything; the program is only bound when an upload actually happens.
+ *
+ * Setting a uniform the program doesn't have is a no-op, matching GL's behavior for location -1.
+ * Use {@link #isActive()} to check for it explicitly.
+ */
+public abstract class Uniform {
+    private final ShaderProgram program;
+    private final String name;
+    private final int expectedType;
+    private int location = -1;
+    private int generation;
+    /** True once the shadow copy matches what the current program holds. */
+    protected boolean shadowValid;
+
+    private Uniform(ShaderProgram program, String name, int expectedType) {
+        this.program = program;
+        this.name = name;
+        this.expectedType = expectedType;
+    }
+
+    /** Re-resolves after a relink and returns the location, or -1 if the uniform isn't active. */
+    protected int resolve() {
+        if (generation != program.getGeneration()) {
+            generation = program.getGeneration();
+            location = program.getUniformLocation(name);
+            shadowValid = false;
+            int type = program.getUniformType(name);
+            if (location != -1 && type != expectedType) {
+                throw new IllegalStateException(program.getName() + ": uniform " + name
+                        + " has GL type 0x" + Integer.toHexString(type) + ", not 0x" + Integer.toHexString(expectedType));
+            }
+        }
+        return location;
+    }
+
+    protected void bindProgram() {
+        program.bind();
+    }
+
+    public boolean isActive() {
+        return resolve() != -1;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static final class Mat4 extends Uniform {
+        /** Staging buffer for matrix uploads. Uniforms are only set on the GL thread, so one is enough. */
+        private static final FloatBuffer UPLOAD_BUFFER = MemoryUtil.memAllocFloat(16);
+
+        private final Matrix4f shadow = new Matrix4f();
+
+        Mat4(ShaderProgram program, String name) {
+            super(program, name, GL_FLOAT_MAT4);
+        }
+
+        public void set(Matrix4f value) {
+            int location = resolve();
+            if (location == -1 || (shadowValid && shadow.equals(value))) {
+                return;
+            }
+            shadow.set(value);
+            shadowValid = true;
+            bindProgram();
+            glUniformMatrix4fv(location, false, value.get(UPLOAD_BUFFER));
+        }
+    }
+
+    public static final class Vec3 extends Uniform {
+        private float x;
+        private float y;
+        private float z;
+
+        Vec3(ShaderProgram program, String name) {
+            super(program, name, GL_FLOAT_VEC3);
+        }
+
+        public void set(Vector3f value) {
+            set(value.x, value.y, value.z);
+        }
+
+        public void set(float x, float y, float z) {
+            int location = resolve();
+            if (location == -1 || (shadowValid && this.x == x && this.y == y && this.z == z)) {
+                return;
+            }
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            shadowValid = true;
+            bindProgram();
+            glUniform3f(location, x, y, z);
+        }
+    }
+
+    public static final class Scalar extends Uniform {
+        private float value;
+
+        Scalar(ShaderProgram program, String name) {
+            super(program, name, GL_FLOAT);
+        }
+
+        public void set(float value) {
+            int location = resolve();
+            if (location == -1 || (shadowValid && this.value == value)) {
+                return;
+            }
+            this.value = value;
+            shadowValid = true;
+            bindProgram();
+            glUniform1f(location, value);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package main;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BulkMath} on the incubating vector API. Matrix work keeps one matrix column in a 4-lane
+ * vector; sphere tests put one object in each lane of the widest vector the CPU has. Needs
+ * {@code --add-modules jdk.incubator.vector} at compile and run time.
+ * <p>
+ * The vectors only stay off the heap when C2 inlines the vector API into these loops. If the JVM
+ * has already compiled the API's generic methods on their own, C2 may refuse to inline them and
+ * every operation boxes a vector object.
+ */
+final class VectorBulkMath extends BulkMath {
+    private static final VectorSpecies<Float> COLUMN = FloatVector.SPECIES_128;
+    private static final VectorSpecies<Float> WIDE = FloatVector.SPECIES_PREFERRED;
+    private static final VectorMask<Float> XYZ = COLUMN.indexInRange(0, 3);
+
+    private final ScalarBulkMath scalar = new ScalarBulkMath();
+
+    @Override
+    public String getName() {
+        return "vector " + WIDE.vectorBitSize() + "-bit";
+    }
+
+    @Override
+    public void mulMatrices(float[] left, float[] matrices, float[] dest, int start, int end) {
+        FloatVector l0 = FloatVector.fromArray(COLUMN, left, 0);
+        FloatVector l1 = FloatVector.fromArray(COLUMN, left, 4);
+        FloatVector l2 = FloatVector.fromArray(COLUMN, left, 8);
+        FloatVector l3 = FloatVector.fromArray(COLUMN, left, 12);
+        for (int i = start; i < end; i++) {
+            int mi = i * 16;
+            for (int column = mi; column < mi + 16; column += 4) {
+                l0.mul(matrices[column])
+                        .add(l1.mul(matrices[column + 1]))
+                        .add(l2.mul(matrices[column + 2]))
+                        .add(l3.mul(matrices[column + 3]))
+                        .intoArray(dest, column);
+            }
+        }
+    }
+
+    @Override
+    public void transformAabbs(float[] matrices, float[] min, float[] max,
+                               float[] destMin, float[] destMax, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int mi = i * 16;
+            int vi = i * 3;
+            FloatVector c0 = FloatVector.fromArray(COLUMN, matrices, mi);
+            FloatVector c1 = FloatVector.fromArray(COLUMN, matrices, mi + 4);
+            FloatVector c2 = FloatVector.fromArray(COLUMN, matrices, mi + 8);
+            FloatVector c3 = FloatVector.fromArray(COLUMN, matrices, mi + 12);
+            float cx = (min[vi] + max[vi]) * 0.5f, ex = (max[vi] - min[vi]) * 0.5f;
+            float cy = (min[vi + 1] + max[vi + 1]) * 0.5f, ey = (max[vi + 1] - min[vi + 1]) * 0.5f;
+            float cz = (min[vi + 2] + max[vi + 2]) * 0.5f, ez = (max[vi + 2] - min[vi + 2]) * 0.5f;
+            FloatVector center = c0.mul(cx).add(c1.mul(cy)).add(c2.mul(cz)).add(c3);
+            FloatVector extent = c0.abs().mul(ex).add(c1.abs().mul(ey)).add(c2.abs().mul(ez));
+            center.sub(extent).intoArray(destMin, vi, XYZ);
+            center.add(extent).intoArray(destMax, vi, XYZ);
+        }
+    }
+
+    /**
+     * Runs the scalar loop. A version with one object per lane, gathering each matrix element,
+     * crashed the JVM with a SIGSEGV once it was hot on an AVX-512 machine running JDK 21.0.1.
+     * The cause was not tracked down and no matching JDK bug was found, so there is no vector
+     * path here until one is written that runs reliably.
+     */
+    @Override
+    public void transformSpheres(float[] matrices, float[] centers, float[] radii,
+                                 float[] destX, float[] destY, float[] destZ, float[] destRadius,
+                                 int start, int end) {
+        scalar.transformSpheres(matrices, centers, radii, destX, destY, destZ, destRadius, start, end);
+    }
+
+    @Override
+    public void testSpheres(float[] planes, float[] x, float[] y, float[] z, float[] radius,
+                            boolean[] inside, int start, int end) {
+        int i = start;
+        int upper = start + WIDE.loopBound(end - start);
+        for (; i < upper; i += WIDE.length()) {
+            FloatVector vx = FloatVector.fromArray(WIDE, x, i);
+            FloatVector vy = FloatVector.fromArray(WIDE, y, i);
+            FloatVector vz = FloatVector.fromArray(WIDE, z, i);
+            // nearest signed distance over all planes, so there is one compare per vector
+            FloatVector nearest = vx.mul(planes[0]).add(vy.mul(planes[1])).add(vz.mul(planes[2])).add(planes[3]);
+            for (int p = 4; p < 24; p += 4) {
+                nearest = nearest.min(vx.mul(planes[p]).add(vy.mul(planes[p + 1]))
+                        .add(vz.mul(planes[p + 2])).add(planes[p + 3]));
+            }
+            FloatVector negRadius = FloatVector.fromArray(WIDE, radius, i).neg();
+            nearest.compare(VectorOperators.GE, negRadius).intoArray(inside, i);
+        }
+        scalar.testSpheres(planes, x, y, z, radius, inside, i, end);
+    }
+}
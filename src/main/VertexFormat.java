@@ -0,0 +1,28 @@
+package main;
+
+/**
+ * Vertex buffer layouts a {@link Mesh} can be built with. Attribute locations are the same in
+ * every layout (0 = position, 1 = texcoord, 2 = normal), and the normal is always a vec2 holding
+ * the octahedral encoding from {@link Mesh#encodeOctahedral}. Vertex shaders have to read it as
+ * a vec2 at location 2 and decode it the way vertex.glsl does.
+ */
+public enum VertexFormat {
+    /** One VBO per attribute, all 32-bit floats: 12 + 8 + 8 bytes per vertex. */
+    SEPARATE_FLOAT(28),
+
+    /**
+     * A single interleaved VBO with float positions, half-float texcoords and normals as two
+     * normalized shorts: 12 + 4 + 4 bytes per vertex.
+     */
+    INTERLEAVED_QUANTIZED(20);
+
+    private final int bytesPerVertex;
+
+    VertexFormat(int bytesPerVertex) {
+        this.bytesPerVertex = bytesPerVertex;
+    }
+
+    public int getBytesPerVertex() {
+        return bytesPerVertex;
+    }
+}
@@ -0,0 +1,162 @@
+package main;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link VectorBulkMath} against {@link ScalarBulkMath} and the per-object JOML calls they replace,
+ * on the three operations the renderer runs per frame: view-projection times model matrices,
+ * world-space boxes for the spatial index and sphere culling against the frustum.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class BulkMathBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int count;
+
+    private final BulkMath scalar = new ScalarBulkMath();
+    private final BulkMath vector = new VectorBulkMath();
+
+    private float[] viewProjection;
+    private float[] matrices;
+    private float[] products;
+    private float[] min;
+    private float[] max;
+    private float[] worldMin;
+    private float[] worldMax;
+    private float[] planes;
+    private float[] x;
+    private float[] y;
+    private float[] z;
+    private float[] radius;
+    private boolean[] inside;
+
+    private final Matrix4f jomlViewProjection = new Matrix4f();
+    private Matrix4f[] jomlMatrices;
+    private Matrix4f[] jomlProducts;
+    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final Vector3f boxMin = new Vector3f();
+    private final Vector3f boxMax = new Vector3f();
+
+    @Setup
+    public void createScene() {
+        Random random = new Random(7);
+        jomlViewProjection.setPerspective((float) Math.toRadians(60), 16f / 9f, 0.1f, 100f)
+                .lookAt(0, 5, 60, 0, 0, 0, 0, 1, 0);
+        viewProjection = jomlViewProjection.get(new float[16]);
+        planes = BulkMath.frustumPlanes(jomlViewProjection, new float[24]);
+        frustum.set(jomlViewProjection);
+
+        matrices = new float[count * 16];
+        products = new float[count * 16];
+        jomlMatrices = new Matrix4f[count];
+        jomlProducts = new Matrix4f[count];
+        min = new float[count * 3];
+        max = new float[count * 3];
+        worldMin = new float[count * 3];
+        worldMax = new float[count * 3];
+        x = new float[count];
+        y = new float[count];
+        z = new float[count];
+        radius = new float[count];
+        inside = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            jomlMatrices[i] = new Matrix4f()
+                    .translation(random.nextFloat() * 200 - 100, random.nextFloat() * 20, random.nextFloat() * 200 - 100)
+                    .rotateY(random.nextFloat() * 6)
+                    .scale(0.5f + random.nextFloat());
+            jomlMatrices[i].get(matrices, i * 16);
+            jomlProducts[i] = new Matrix4f();
+            for (int c = 0; c < 3; c++) {
+                min[i * 3 + c] = -0.5f - random.nextFloat();
+                max[i * 3 + c] = 0.5f + random.nextFloat();
+            }
+            x[i] = matrices[i * 16 + 12];
+            y[i] = matrices[i * 16 + 13];
+            z[i] = matrices[i * 16 + 14];
+            radius[i] = 1.0f + random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    public float[] mulMatricesVector() {
+        vector.mulMatrices(viewProjection, matrices, products, 0, count);
+        return products;
+    }
+
+    @Benchmark
+    public float[] mulMatricesScalar() {
+        scalar.mulMatrices(viewProjection, matrices, products, 0, count);
+        return products;
+    }
+
+    @Benchmark
+    public Matrix4f[] mulMatricesJoml() {
+        for (int i = 0; i < count; i++) {
+            jomlViewProjection.mul(jomlMatrices[i], jomlProducts[i]);
+        }
+        return jomlProducts;
+    }
+
+    @Benchmark
+    public float[] transformAabbsVector() {
+        vector.transformAabbs(matrices, min, max, worldMin, worldMax, 0, count);
+        return worldMax;
+    }
+
+    @Benchmark
+    public float[] transformAabbsScalar() {
+        scalar.transformAabbs(matrices, min, max, worldMin, worldMax, 0, count);
+        return worldMax;
+    }
+
+    @Benchmark
+    public void transformAabbsJoml(Blackhole blackhole) {
+        for (int i = 0; i < count; i++) {
+            int vi = i * 3;
+            jomlMatrices[i].transformAab(min[vi], min[vi + 1], min[vi + 2], max[vi], max[vi + 1], max[vi + 2],
+                    boxMin, boxMax);
+            blackhole.consume(boxMax.x);
+        }
+    }
+
+    @Benchmark
+    public boolean[] testSpheresVector() {
+        vector.testSpheres(planes, x, y, z, radius, inside, 0, count);
+        return inside;
+    }
+
+    @Benchmark
+    public boolean[] testSpheresScalar() {
+        scalar.testSpheres(planes, x, y, z, radius, inside, 0, count);
+        return inside;
+    }
+
+    @Benchmark
+    public boolean[] testSpheresJoml() {
+        for (int i = 0; i < count; i++) {
+            inside[i] = frustum.testSphere(x[i], y[i], z[i], radius[i]);
+        }
+        return inside;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BulkMathBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
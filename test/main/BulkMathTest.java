@@ -0,0 +1,213 @@
+package main;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link VectorBulkMath} against {@link ScalarBulkMath} on random data, for every range length up
+ * to a few vectors and at unaligned starts, so both the vector loops and their scalar tails run.
+ * {@link ScalarBulkMath} is in turn checked against the JOML calls it replaces, so a mistake made
+ * the same way in both implementations can't pass.
+ */
+public class BulkMathTest {
+    private static final int MAX_LENGTH = 40;
+    private static final int[] STARTS = {0, 1, 3, 7};
+    private static final int CAPACITY = MAX_LENGTH + 8;
+    private static final float EPSILON = 1e-4f;
+
+    private final BulkMath scalar = new ScalarBulkMath();
+    private final BulkMath vector = new VectorBulkMath();
+    private final Random random = new Random(42);
+
+    @Test
+    public void mulMatricesAgree() {
+        float[] left = randomAffine(new float[16], 0);
+        float[] matrices = randomMatrices(CAPACITY);
+        for (int start : STARTS) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                float[] expected = new float[CAPACITY * 16];
+                float[] actual = new float[CAPACITY * 16];
+                scalar.mulMatrices(left, matrices, expected, start, start + length);
+                vector.mulMatrices(left, matrices, actual, start, start + length);
+                assertClose("mulMatrices " + start + "+" + length, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void transformAabbsAgree() {
+        float[] matrices = randomMatrices(CAPACITY);
+        float[] min = new float[CAPACITY * 3];
+        float[] max = new float[CAPACITY * 3];
+        for (int i = 0; i < min.length; i++) {
+            min[i] = random.nextFloat() * 20 - 10;
+            max[i] = min[i] + random.nextFloat() * 4;
+        }
+        for (int start : STARTS) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                float[] expectedMin = new float[CAPACITY * 3], expectedMax = new float[CAPACITY * 3];
+                float[] actualMin = new float[CAPACITY * 3], actualMax = new float[CAPACITY * 3];
+                scalar.transformAabbs(matrices, min, max, expectedMin, expectedMax, start, start + length);
+                vector.transformAabbs(matrices, min, max, actualMin, actualMax, start, start + length);
+                assertClose("transformAabbs min " + start + "+" + length, expectedMin, actualMin);
+                assertClose("transformAabbs max " + start + "+" + length, expectedMax, actualMax);
+            }
+        }
+    }
+
+    @Test
+    public void testSpheresAgree() {
+        Matrix4f viewProjection = new Matrix4f()
+                .perspective((float) Math.toRadians(60), 1.5f, 0.1f, 50f)
+                .lookAt(0, 2, 15, 0, 0, 0, 0, 1, 0);
+        float[] planes = BulkMath.frustumPlanes(viewProjection, new float[24]);
+        float[] x = randomFloats(CAPACITY, 30);
+        float[] y = randomFloats(CAPACITY, 30);
+        float[] z = randomFloats(CAPACITY, 30);
+        float[] radius = randomRadii(CAPACITY, 3);
+        int insideCount = 0;
+        for (int start : STARTS) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                boolean[] expected = new boolean[CAPACITY];
+                boolean[] actual = new boolean[CAPACITY];
+                scalar.testSpheres(planes, x, y, z, radius, expected, start, start + length);
+                vector.testSpheres(planes, x, y, z, radius, actual, start, start + length);
+                assertArrayEquals("testSpheres " + start + "+" + length, expected, actual);
+                for (boolean inside : expected) {
+                    insideCount += inside ? 1 : 0;
+                }
+            }
+        }
+        assertTrue("no sphere was inside, the test data is useless", insideCount > 0);
+    }
+
+    @Test
+    public void scalarMulMatricesMatchesJoml() {
+        Matrix4f left = new Matrix4f().set(randomAffine(new float[16], 0));
+        float[] leftArray = left.get(new float[16]);
+        float[] matrices = randomMatrices(CAPACITY);
+        float[] dest = new float[CAPACITY * 16];
+        scalar.mulMatrices(leftArray, matrices, dest, 0, CAPACITY);
+        Matrix4f product = new Matrix4f();
+        for (int i = 0; i < CAPACITY; i++) {
+            left.mul(new Matrix4f().set(matrices, i * 16), product);
+            assertClose("mulMatrices " + i, product.get(new float[16]), slice(dest, i * 16, 16));
+        }
+    }
+
+    @Test
+    public void scalarTransformAabbsMatchesJoml() {
+        float[] matrices = randomMatrices(CAPACITY);
+        float[] min = new float[CAPACITY * 3];
+        float[] max = new float[CAPACITY * 3];
+        for (int i = 0; i < min.length; i++) {
+            min[i] = random.nextFloat() * 20 - 10;
+            max[i] = min[i] + random.nextFloat() * 4;
+        }
+        float[] destMin = new float[CAPACITY * 3], destMax = new float[CAPACITY * 3];
+        scalar.transformAabbs(matrices, min, max, destMin, destMax, 0, CAPACITY);
+        Vector3f expectedMin = new Vector3f(), expectedMax = new Vector3f();
+        for (int i = 0; i < CAPACITY; i++) {
+            int vi = i * 3;
+            new Matrix4f().set(matrices, i * 16).transformAab(min[vi], min[vi + 1], min[vi + 2],
+                    max[vi], max[vi + 1], max[vi + 2], expectedMin, expectedMax);
+            assertClose("transformAabbs min " + i, new float[] {expectedMin.x, expectedMin.y, expectedMin.z}, slice(destMin, vi, 3));
+            assertClose("transformAabbs max " + i, new float[] {expectedMax.x, expectedMax.y, expectedMax.z}, slice(destMax, vi, 3));
+        }
+    }
+
+    @Test
+    public void scalarTransformSpheresMatchesJoml() {
+        float[] matrices = randomMatrices(CAPACITY);
+        float[] centers = randomFloats(CAPACITY * 3, 10);
+        float[] radii = randomRadii(CAPACITY, 2);
+        float[] x = new float[CAPACITY], y = new float[CAPACITY], z = new float[CAPACITY];
+        float[] radius = new float[CAPACITY];
+        scalar.transformSpheres(matrices, centers, radii, x, y, z, radius, 0, CAPACITY);
+        Vector3f center = new Vector3f(), scale = new Vector3f();
+        for (int i = 0; i < CAPACITY; i++) {
+            Matrix4f matrix = new Matrix4f().set(matrices, i * 16);
+            matrix.transformPosition(centers[i * 3], centers[i * 3 + 1], centers[i * 3 + 2], center);
+            matrix.getScale(scale);
+            float expectedRadius = radii[i] * Math.max(scale.x, Math.max(scale.y, scale.z));
+            assertClose("transformSpheres " + i, new float[] {center.x, center.y, center.z, expectedRadius},
+                    new float[] {x[i], y[i], z[i], radius[i]});
+        }
+    }
+
+    @Test
+    public void scalarTestSpheresMatchesJoml() {
+        Matrix4f viewProjection = new Matrix4f()
+                .perspective((float) Math.toRadians(60), 1.5f, 0.1f, 50f)
+                .lookAt(0, 2, 15, 0, 0, 0, 0, 1, 0);
+        float[] planes = BulkMath.frustumPlanes(viewProjection, new float[24]);
+        FrustumIntersection frustum = new FrustumIntersection(viewProjection);
+        int count = 1000;
+        float[] x = randomFloats(count, 30);
+        float[] y = randomFloats(count, 30);
+        float[] z = randomFloats(count, 30);
+        float[] radius = randomRadii(count, 3);
+        boolean[] inside = new boolean[count];
+        scalar.testSpheres(planes, x, y, z, radius, inside, 0, count);
+        int insideCount = 0;
+        for (int i = 0; i < count; i++) {
+            assertEquals("testSpheres " + i, frustum.testSphere(x[i], y[i], z[i], radius[i]), inside[i]);
+            insideCount += inside[i] ? 1 : 0;
+        }
+        assertTrue("no sphere was inside, the test data is useless", insideCount > 0);
+        assertTrue("every sphere was inside, the test data is useless", insideCount < count);
+    }
+
+    private float[] randomMatrices(int count) {
+        float[] matrices = new float[count * 16];
+        for (int i = 0; i < count; i++) {
+            randomAffine(matrices, i * 16);
+        }
+        return matrices;
+    }
+
+    /** Rotation, non-uniform scale and translation, as a transform store would hold. */
+    private float[] randomAffine(float[] dest, int offset) {
+        new Matrix4f()
+                .translation(random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10)
+                .rotateXYZ(random.nextFloat() * 6, random.nextFloat() * 6, random.nextFloat() * 6)
+                .scale(0.5f + random.nextFloat() * 2, 0.5f + random.nextFloat() * 2, 0.5f + random.nextFloat() * 2)
+                .get(dest, offset);
+        return dest;
+    }
+
+    private float[] randomFloats(int count, float range) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (random.nextFloat() * 2 - 1) * range;
+        }
+        return values;
+    }
+
+    private float[] randomRadii(int count, float max) {
+        float[] radii = new float[count];
+        for (int i = 0; i < count; i++) {
+            radii[i] = random.nextFloat() * max;
+        }
+        return radii;
+    }
+
+    private static float[] slice(float[] array, int offset, int length) {
+        float[] slice = new float[length];
+        System.arraycopy(array, offset, slice, 0, length);
+        return slice;
+    }
+
+    private static void assertClose(String message, float[] expected, float[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            float tolerance = EPSILON * Math.max(1.0f, Math.abs(expected[i]));
+            assertEquals(message + " [" + i + "]", expected[i], actual[i], tolerance);
+        }
+    }
+}
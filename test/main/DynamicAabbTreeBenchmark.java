@@ -0,0 +1,95 @@
+package main;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Churn on a {@link DynamicAabbTree} holding {@code count} boxes: removing a batch of objects and
+ * inserting them elsewhere, and moving every object a small step the way the spatial index sees
+ * animated transforms, with a few of them jumping out of their fat boxes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class DynamicAabbTreeBenchmark {
+    private static final float MARGIN = 0.25f;
+    private static final float SIZE = 1.0f;
+    private static final int BATCH = 256;
+    /** Precomputed positions, so the benchmark does not measure the random number generator. */
+    private static final int POSITIONS = 1 << 16;
+
+    @Param({"1000", "10000", "100000"})
+    public int count;
+
+    private DynamicAabbTree<Integer> tree;
+    private int[] proxies;
+    private float[] x;
+    private float[] y;
+    private float[] z;
+    private final float[] positions = new float[POSITIONS * 3];
+    private int next;
+    private int step;
+
+    @Setup
+    public void buildTree() {
+        Random random = new Random(11);
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextFloat() * 400 - 200;
+        }
+        tree = new DynamicAabbTree<>(MARGIN);
+        proxies = new int[count];
+        x = new float[count];
+        y = new float[count];
+        z = new float[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = positions[i % POSITIONS * 3];
+            y[i] = positions[i % POSITIONS * 3 + 1] * 0.05f;
+            z[i] = positions[i % POSITIONS * 3 + 2];
+            proxies[i] = tree.insert(x[i], y[i], z[i], x[i] + SIZE, y[i] + SIZE, z[i] + SIZE, i);
+        }
+    }
+
+    @Benchmark
+    public int insertRemove() {
+        for (int b = 0; b < BATCH; b++) {
+            int i = next % count;
+            int p = (next & (POSITIONS - 1)) * 3;
+            next++;
+            tree.remove(proxies[i]);
+            x[i] = positions[p];
+            y[i] = positions[p + 1] * 0.05f;
+            z[i] = positions[p + 2];
+            proxies[i] = tree.insert(x[i], y[i], z[i], x[i] + SIZE, y[i] + SIZE, z[i] + SIZE, i);
+        }
+        return tree.getHeight();
+    }
+
+    @Benchmark
+    public int moveAll() {
+        // back and forth by less than the margin, and every 64th object jumps out of its fat box
+        float delta = (step++ & 1) == 0 ? 0.1f : -0.1f;
+        int reinserted = 0;
+        for (int i = 0; i < count; i++) {
+            float dx = (i + step & 63) == 0 ? delta * 20 : delta;
+            x[i] += dx;
+            if (tree.move(proxies[i], x[i], y[i], z[i], x[i] + SIZE, y[i] + SIZE, z[i] + SIZE)) {
+                reinserted++;
+            }
+        }
+        return reinserted;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DynamicAabbTreeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
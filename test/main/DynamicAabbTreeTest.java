@@ -0,0 +1,210 @@
+package main;
+
+import org.joml.FrustumIntersection;
+import org.joml.Intersectionf;
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Random inserts, moves and removes on a {@link DynamicAabbTree}, with every query checked against
+ * a brute-force scan over a copy of the boxes. The copy tracks fat boxes the way the tree does, so
+ * overlap and frustum queries must match exactly; rays are checked for the nearest real hit.
+ */
+public class DynamicAabbTreeTest {
+    private static final float MARGIN = 0.2f;
+    private static final int OPERATIONS = 20_000;
+    private static final int VERIFY_EVERY = 250;
+    private static final int QUERIES_PER_CHECK = 10;
+
+    private final Random random = new Random(5);
+    private final DynamicAabbTree<Integer> tree = new DynamicAabbTree<>(MARGIN);
+    /** Tight bounds per live proxy. */
+    private final Map<Integer, float[]> tight = new HashMap<>();
+    /** Fat bounds per live proxy, as the tree should hold them. */
+    private final Map<Integer, float[]> fat = new HashMap<>();
+    private final Map<Integer, Integer> data = new HashMap<>();
+    private final List<Integer> proxies = new ArrayList<>();
+
+    @Test
+    public void randomChurnMatchesBruteForce() {
+        for (int op = 0; op < OPERATIONS; op++) {
+            int kind = random.nextInt(10);
+            if (kind < 4 || proxies.size() < 10) {
+                insert(op);
+            } else if (kind < 8) {
+                move(proxies.get(random.nextInt(proxies.size())));
+            } else {
+                remove(proxies.get(random.nextInt(proxies.size())));
+            }
+            if (op % VERIFY_EVERY == 0) {
+                verify();
+            }
+        }
+        verify();
+    }
+
+    @Test
+    public void removingEverythingEmptiesTheTree() {
+        for (int i = 0; i < 500; i++) {
+            insert(i);
+        }
+        while (!proxies.isEmpty()) {
+            remove(proxies.get(random.nextInt(proxies.size())));
+        }
+        assertEquals(0, tree.getProxyCount());
+        tree.queryOverlap(-1000, -1000, -1000, 1000, 1000, 1000, proxy -> {
+            fail("empty tree reported " + proxy);
+            return true;
+        });
+        tree.raycast(0, 0, 0, 1, 0, 0, 1000, (proxy, maxDistance) -> {
+            fail("empty tree hit " + proxy);
+            return maxDistance;
+        });
+    }
+
+    private void insert(int userData) {
+        float x = random.nextFloat() * 200 - 100, y = random.nextFloat() * 20, z = random.nextFloat() * 200 - 100;
+        float size = random.nextFloat() * 2 + 0.1f;
+        float[] box = {x, y, z, x + size, y + size, z + size};
+        int proxy = tree.insert(box[0], box[1], box[2], box[3], box[4], box[5], userData);
+        assertFalse("proxy " + proxy + " handed out twice", tight.containsKey(proxy));
+        tight.put(proxy, box);
+        fat.put(proxy, grow(box));
+        data.put(proxy, userData);
+        proxies.add(proxy);
+    }
+
+    private void move(int proxy) {
+        float[] box = tight.get(proxy);
+        // mostly small steps that stay inside the fat box, sometimes a jump
+        float step = random.nextInt(10) == 0 ? 20 : 0.3f;
+        float dx = (random.nextFloat() - 0.5f) * step, dy = (random.nextFloat() - 0.5f) * step;
+        float dz = (random.nextFloat() - 0.5f) * step;
+        box[0] += dx;
+        box[3] += dx;
+        box[1] += dy;
+        box[4] += dy;
+        box[2] += dz;
+        box[5] += dz;
+        boolean reinserted = tree.move(proxy, box[0], box[1], box[2], box[3], box[4], box[5]);
+        float[] fatBox = fat.get(proxy);
+        boolean fits = fatBox[0] <= box[0] && fatBox[1] <= box[1] && fatBox[2] <= box[2]
+                && fatBox[3] >= box[3] && fatBox[4] >= box[4] && fatBox[5] >= box[5];
+        assertEquals("move of proxy " + proxy + " reinserted it", !fits, reinserted);
+        if (!fits) {
+            fat.put(proxy, grow(box));
+        }
+    }
+
+    private void remove(int proxy) {
+        tree.remove(proxy);
+        tight.remove(proxy);
+        fat.remove(proxy);
+        data.remove(proxy);
+        proxies.remove(Integer.valueOf(proxy));
+    }
+
+    private static float[] grow(float[] box) {
+        return new float[] {box[0] - MARGIN, box[1] - MARGIN, box[2] - MARGIN,
+                box[3] + MARGIN, box[4] + MARGIN, box[5] + MARGIN};
+    }
+
+    private void verify() {
+        assertEquals(tight.size(), tree.getProxyCount());
+        for (Map.Entry<Integer, Integer> entry : data.entrySet()) {
+            assertEquals(entry.getValue(), tree.getUserData(entry.getKey()));
+        }
+        int log2 = 32 - Integer.numberOfLeadingZeros(Math.max(1, tight.size()));
+        assertTrue("height " + tree.getHeight() + " for " + tight.size() + " proxies",
+                tree.getHeight() <= 3 * log2);
+
+        for (int q = 0; q < QUERIES_PER_CHECK; q++) {
+            float x = random.nextFloat() * 200 - 100, z = random.nextFloat() * 200 - 100;
+            verifyOverlap(x, z, random.nextFloat() * 30);
+            verifyFrustum(x, z);
+            verifyRay(x, z);
+        }
+    }
+
+    private void verifyOverlap(float x, float z, float size) {
+        float minY = 0, maxY = 5;
+        Set<Integer> expected = new HashSet<>();
+        for (Map.Entry<Integer, float[]> entry : fat.entrySet()) {
+            float[] b = entry.getValue();
+            if (b[0] <= x + size && b[3] >= x && b[1] <= maxY && b[4] >= minY && b[2] <= z + size && b[5] >= z) {
+                expected.add(entry.getKey());
+            }
+        }
+        assertEquals("overlap query", expected, collect(reported -> tree.queryOverlap(x, minY, z, x + size, maxY, z + size, reported)));
+    }
+
+    private void verifyFrustum(float x, float z) {
+        Matrix4f viewProjection = new Matrix4f().perspective(1.0f, 1.3f, 0.1f, 80.0f)
+                .lookAt(x, 5, z, x + random.nextFloat() - 0.5f, 5, z + random.nextFloat() - 0.5f, 0, 1, 0);
+        FrustumIntersection frustum = new FrustumIntersection(viewProjection);
+        Set<Integer> expected = new HashSet<>();
+        for (Map.Entry<Integer, float[]> entry : fat.entrySet()) {
+            float[] b = entry.getValue();
+            if (frustum.testAab(b[0], b[1], b[2], b[3], b[4], b[5])) {
+                expected.add(entry.getKey());
+            }
+        }
+        assertEquals("frustum query", expected, collect(reported -> tree.queryFrustum(frustum, reported)));
+    }
+
+    private void verifyRay(float x, float z) {
+        float y = 3, maxDistance = 100;
+        Vector3f dir = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() * 0.2f - 0.1f,
+                random.nextFloat() - 0.5f).normalize();
+        Vector2f result = new Vector2f();
+
+        float nearest = maxDistance;
+        int expected = -1;
+        for (Map.Entry<Integer, float[]> entry : tight.entrySet()) {
+            float[] b = entry.getValue();
+            if (Intersectionf.intersectRayAab(x, y, z, dir.x, dir.y, dir.z, b[0], b[1], b[2], b[3], b[4], b[5], result)
+                    && result.x >= 0 && result.x < nearest) {
+                nearest = result.x;
+                expected = entry.getKey();
+            }
+        }
+
+        int[] hit = {-1};
+        tree.raycast(x, y, z, dir.x, dir.y, dir.z, maxDistance, (proxy, clip) -> {
+            float[] b = tight.get(proxy);
+            if (Intersectionf.intersectRayAab(x, y, z, dir.x, dir.y, dir.z, b[0], b[1], b[2], b[3], b[4], b[5], result)
+                    && result.x >= 0 && result.x < clip) {
+                hit[0] = proxy;
+                return result.x;
+            }
+            return clip;
+        });
+        assertEquals("nearest ray hit", expected, hit[0]);
+    }
+
+    private interface Query {
+        void run(DynamicAabbTree.QueryCallback callback);
+    }
+
+    /** Runs a query and returns what it reported, failing on duplicates. */
+    private static Set<Integer> collect(Query query) {
+        Set<Integer> reported = new HashSet<>();
+        query.run(proxy -> {
+            assertTrue("proxy " + proxy + " reported twice", reported.add(proxy));
+            return true;
+        });
+        return reported;
+    }
+}
@@ -0,0 +1,218 @@
+package main;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the CPU side of {@link Engine}'s frame graph without a window: input handed to a running
+ * {@link Simulation}, snapshot pickup, parallel transform updates, the spatial index, bulk sphere
+ * culling and picking. After warming up, further frames must not allocate on the main thread, the
+ * job workers or the simulation thread.
+ * <p>
+ * Culling goes through {@link ScalarBulkMath}. Whether {@link VectorBulkMath} allocates depends on
+ * C2 inlining the vector API, which changes with whatever else the JVM has run, so checking it here
+ * would make the result depend on test order.
+ */
+public class FrameAllocationTest {
+    private static final int OBJECT_COUNT = 2048;
+    private static final int ANIMATED_COUNT = 256;
+    private static final int WARMUP_FRAMES = 5_000;
+    private static final int MEASURED_FRAMES = 500;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final InputQueue inputQueue = new InputQueue(64);
+    private final TransformStore transforms = new TransformStore(OBJECT_COUNT);
+    private final DynamicAabbTree<Integer> spatialIndex = new DynamicAabbTree<>(0.25f);
+    private final ScalarBulkMath bulkMath = new ScalarBulkMath();
+    private final int[] handles = new int[OBJECT_COUNT];
+    private final int[] proxies = new int[OBJECT_COUNT];
+    private final float[] matrices = new float[OBJECT_COUNT * 16];
+    private final float[] centers = new float[OBJECT_COUNT * 3];
+    private final float[] radii = new float[OBJECT_COUNT];
+    private final float[] worldX = new float[OBJECT_COUNT];
+    private final float[] worldY = new float[OBJECT_COUNT];
+    private final float[] worldZ = new float[OBJECT_COUNT];
+    private final float[] worldRadius = new float[OBJECT_COUNT];
+    private final boolean[] visible = new boolean[OBJECT_COUNT];
+    private final float[] planes = new float[24];
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Vector3f playerPosition = new Vector3f();
+    private final Matrix4f world = new Matrix4f();
+    private final Vector3f translation = new Vector3f();
+    private final DynamicAabbTree.RayCallback pickCallback = (proxy, maxDistance) -> {
+        picked = proxy;
+        return maxDistance * 0.5f;
+    };
+
+    private Simulation simulation;
+    private JobSystem jobSystem;
+    private TaskGraph frameGraph;
+    private SimulationSnapshot snapshot;
+    private int frame;
+    private int visibleCount;
+    private int picked;
+
+    @Before
+    public void buildScene() {
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            handles[i] = transforms.create();
+            transforms.setPosition(handles[i], i % 64 * 2.0f, 0.0f, i / 64 * 2.0f);
+            if (i % 4 != 0) {
+                // small hierarchies, so world propagation has parents to follow
+                transforms.setParent(handles[i], handles[i - i % 4]);
+                transforms.setPosition(handles[i], 0.5f, 0.5f * (i % 4), 0.0f);
+            }
+            radii[i] = 0.5f;
+        }
+        transforms.updateLocalMatrices(0, transforms.size());
+        transforms.propagateWorldMatrices();
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            transforms.getWorldMatrix(handles[i], world).getTranslation(translation);
+            proxies[i] = spatialIndex.insert(translation.x - 0.5f, translation.y - 0.5f, translation.z - 0.5f,
+                    translation.x + 0.5f, translation.y + 0.5f, translation.z + 0.5f, i);
+        }
+
+        simulation = new Simulation(new Player(new Vector3f(0, 1, 0)), new CameraHandler(), inputQueue, 120);
+        simulation.start();
+        jobSystem = new JobSystem(2);
+        buildFrameGraph();
+    }
+
+    @After
+    public void shutDown() {
+        simulation.stop();
+        jobSystem.shutdown();
+    }
+
+    /** The same shape as Engine.buildFrameGraph, with the GL tasks left out. */
+    private void buildFrameGraph() {
+        frameGraph = new TaskGraph(jobSystem);
+        TaskGraph.Task input = frameGraph.addMainThread("input", this::sampleInput);
+        TaskGraph.Task camera = frameGraph.addMainThread("camera", this::updateCamera, input);
+        TaskGraph.Task localTransforms = frameGraph.addParallel("local transforms",
+                transforms::size, transforms::updateLocalMatrices, camera);
+        TaskGraph.Task worldTransforms = frameGraph.add("world transforms",
+                transforms::propagateWorldMatrices, localTransforms);
+        TaskGraph.Task spatial = frameGraph.add("spatial index", this::updateSpatialIndex, worldTransforms);
+        frameGraph.add("picking", this::pick, spatial);
+        TaskGraph.Task culling = frameGraph.addParallel("culling",
+                () -> OBJECT_COUNT, this::cullRange, worldTransforms);
+        frameGraph.addMainThread("render", this::countVisible, culling);
+    }
+
+    private void sampleInput() {
+        InputSample sample = inputQueue.claim();
+        if (sample != null) {
+            sample.clear();
+            sample.moveZ = 1;
+            sample.jump = frame % 60 == 0;
+            sample.mouseMoved = true;
+            sample.mouseX = frame % 200;
+            sample.mouseY = 100;
+            inputQueue.publish();
+        }
+    }
+
+    private void updateCamera() {
+        snapshot = simulation.acquireSnapshot();
+        snapshot.getInterpolatedPosition(System.nanoTime(), playerPosition);
+        viewProjection.setPerspective((float) Math.toRadians(45.0f), 16.0f / 9.0f, 0.1f, 100.0f)
+                .lookAt(playerPosition.x, playerPosition.y, playerPosition.z,
+                        playerPosition.x + snapshot.getCameraFront().x, playerPosition.y + snapshot.getCameraFront().y,
+                        playerPosition.z + snapshot.getCameraFront().z, 0, 1, 0);
+        BulkMath.frustumPlanes(viewProjection, planes);
+        for (int i = 0; i < ANIMATED_COUNT; i++) {
+            transforms.setRotationEuler(handles[i * 4], 0, frame + i, 0);
+        }
+        frame++;
+    }
+
+    private void updateSpatialIndex() {
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            if (transforms.hasWorldChanged(handles[i])) {
+                transforms.getWorldMatrix(handles[i], world).getTranslation(translation);
+                spatialIndex.move(proxies[i], translation.x - 0.5f, translation.y - 0.5f, translation.z - 0.5f,
+                        translation.x + 0.5f, translation.y + 0.5f, translation.z + 0.5f);
+            }
+        }
+    }
+
+    private void pick() {
+        picked = -1;
+        Vector3f front = snapshot.getCameraFront();
+        spatialIndex.raycast(playerPosition.x, playerPosition.y, playerPosition.z,
+                front.x, front.y, front.z, 50.0f, pickCallback);
+    }
+
+    private void cullRange(int start, int end) {
+        for (int i = start; i < end; i++) {
+            transforms.getWorldMatrix(handles[i], matrices, i * 16);
+        }
+        bulkMath.transformSpheres(matrices, centers, radii, worldX, worldY, worldZ, worldRadius, start, end);
+        bulkMath.testSpheres(planes, worldX, worldY, worldZ, worldRadius, visible, start, end);
+    }
+
+    private void countVisible() {
+        int count = 0;
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            if (visible[i]) {
+                count++;
+            }
+        }
+        visibleCount = count;
+    }
+
+    @Test
+    public void steadyStateFramesDoNotAllocate() {
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            frameGraph.execute();
+        }
+        long[] threadIds = frameThreadIds();
+        long[] before = new long[threadIds.length];
+        long[] after = new long[threadIds.length];
+        for (int i = 0; i < threadIds.length; i++) {
+            before[i] = THREAD_MX_BEAN.getThreadAllocatedBytes(threadIds[i]);
+        }
+        long mainBefore = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            frameGraph.execute();
+        }
+
+        long mainAfter = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < threadIds.length; i++) {
+            after[i] = THREAD_MX_BEAN.getThreadAllocatedBytes(threadIds[i]);
+        }
+
+        assertEquals("bytes allocated on the main thread over " + MEASURED_FRAMES + " frames",
+                0, mainAfter - mainBefore);
+        for (int i = 0; i < threadIds.length; i++) {
+            assertEquals("bytes allocated on thread " + threadIds[i] + " over " + MEASURED_FRAMES + " frames",
+                    0, after[i] - before[i]);
+        }
+        assertTrue("nothing was visible", visibleCount > 0);
+    }
+
+    /** The job workers and the simulation thread. */
+    private static long[] frameThreadIds() {
+        List<Long> ids = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("job-worker-") || thread.getName().equals("simulation")) {
+                ids.add(thread.threadId());
+            }
+        }
+        assertFalse("no worker threads found", ids.isEmpty());
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+}
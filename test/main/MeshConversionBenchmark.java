@@ -0,0 +1,159 @@
+package main;
+
+import org.lwjgl.assimp.AIFace;
+import org.lwjgl.assimp.AIMesh;
+import org.lwjgl.assimp.AIScene;
+import org.lwjgl.assimp.AIVector3D;
+import org.lwjgl.assimp.Assimp;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and allocation of copying an imported Assimp mesh into {@link MeshData}: the bulk copy in
+ * {@link MeshHandler#processMesh} against the boxed {@code List<Float>} conversion it replaced.
+ * {@link #main} runs both with the GC profiler and prints time and bytes allocated per million
+ * vertices for each model.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class MeshConversionBenchmark {
+
+    @Param({"othermodels/bunny.obj", "othermodels/bunnybig.obj"})
+    public String model;
+
+    private AIScene scene;
+    private AIMesh mesh;
+
+    @Setup
+    public void importModel() {
+        scene = Assimp.aiImportFile(model, Assimp.aiProcess_Triangulate | Assimp.aiProcess_FlipUVs);
+        if (scene == null || scene.mNumMeshes() < 1) {
+            throw new IllegalStateException("error loading model: " + Assimp.aiGetErrorString());
+        }
+        mesh = AIMesh.create(scene.mMeshes().get(0));
+    }
+
+    @TearDown
+    public void releaseModel() {
+        Assimp.aiReleaseImport(scene);
+    }
+
+    @Benchmark
+    public int convert() {
+        MeshData data = MeshHandler.processMesh(mesh);
+        int vertexCount = data.getVertexCount();
+        data.free();
+        return vertexCount;
+    }
+
+    @Benchmark
+    public int convertWithLists() {
+        MeshData data = listConversion(mesh);
+        int vertexCount = data.getVertexCount();
+        data.free();
+        return vertexCount;
+    }
+
+    /**
+     * The conversion before the bulk copy: every component boxed into a list, copied into arrays
+     * and copied again into native buffers, as the old {@code Mesh} constructor did.
+     */
+    private static MeshData listConversion(AIMesh aiMesh) {
+        List<Float> vertices = new ArrayList<>();
+        List<Float> texCoords = new ArrayList<>();
+        List<Float> normals = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+
+        for (int i = 0; i < aiMesh.mNumVertices(); i++) {
+            AIVector3D vertex = aiMesh.mVertices().get(i);
+            vertices.add(vertex.x());
+            vertices.add(vertex.y());
+            vertices.add(vertex.z());
+
+            if (aiMesh.mTextureCoords(0) != null) {
+                AIVector3D texCoord = aiMesh.mTextureCoords(0).get(i);
+                texCoords.add(texCoord.x());
+                texCoords.add(texCoord.y());
+            } else {
+                texCoords.add(0.0f);
+                texCoords.add(0.0f);
+            }
+
+            if (aiMesh.mNormals() != null) {
+                AIVector3D normal = aiMesh.mNormals().get(i);
+                normals.add(normal.x());
+                normals.add(normal.y());
+                normals.add(normal.z());
+            }
+        }
+
+        for (int i = 0; i < aiMesh.mNumFaces(); i++) {
+            AIFace face = aiMesh.mFaces().get(i);
+            for (int j = 0; j < face.mNumIndices(); j++) {
+                indices.add(face.mIndices().get(j));
+            }
+        }
+
+        return MeshData.fromArrays(toFloatArray(vertices), toFloatArray(texCoords), toFloatArray(normals),
+                toIntArray(indices));
+    }
+
+    private static float[] toFloatArray(List<Float> list) {
+        float[] array = new float[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static int[] toIntArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(MeshConversionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+
+        System.out.printf("%n%-20s %-28s %16s %20s%n", "benchmark", "model", "ms / M vertices", "MB / M vertices");
+        for (RunResult result : results) {
+            String model = result.getParams().getParam("model");
+            double millions = vertexCount(model) / 1_000_000.0;
+            Result<?> bytes = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            System.out.printf("%-20s %-28s %16.2f %20.2f%n", result.getParams().getBenchmark().replaceAll(".*\\.", ""),
+                    model, result.getPrimaryResult().getScore() / 1000.0 / millions,
+                    bytes.getScore() / (1024 * 1024) / millions);
+        }
+    }
+
+    private static int vertexCount(String model) {
+        AIScene scene = Assimp.aiImportFile(model, Assimp.aiProcess_Triangulate | Assimp.aiProcess_FlipUVs);
+        if (scene == null || scene.mNumMeshes() < 1) {
+            throw new IllegalStateException("error loading model: " + Assimp.aiGetErrorString());
+        }
+        try {
+            return AIMesh.create(scene.mMeshes().get(0)).mNumVertices();
+        } finally {
+            Assimp.aiReleaseImport(scene);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package main;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lwjgl.assimp.AIMesh;
+import org.lwjgl.assimp.AIScene;
+import org.lwjgl.assimp.Assimp;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/** Runs {@link MeshOptimizer} on the welded bunny, the way {@link MeshHandler} loads models. */
+public class MeshOptimizerTest {
+    private static final String MODEL = "othermodels/bunny.obj";
+
+    private MeshData mesh;
+
+    @Before
+    public void loadBunny() {
+        AIScene scene = Assimp.aiImportFile(MODEL, Assimp.aiProcess_Triangulate | Assimp.aiProcess_FlipUVs);
+        assertNotNull("error loading model: " + Assimp.aiGetErrorString(), scene);
+        try {
+            MeshData converted = MeshHandler.processMesh(AIMesh.create(scene.mMeshes().get(0)));
+            mesh = MeshWelder.weld(converted);
+            if (mesh != converted) {
+                converted.free();
+            }
+        } finally {
+            Assimp.aiReleaseImport(scene);
+        }
+    }
+
+    @After
+    public void freeMesh() {
+        if (mesh != null) {
+            mesh.free();
+        }
+    }
+
+    @Test
+    public void vertexCacheKeepsEveryTriangle() {
+        int[] before = toArray(mesh.getIndices());
+
+        MeshOptimizer.optimizeVertexCache(mesh.getIndices(), mesh.getVertexCount());
+        int[] after = toArray(mesh.getIndices());
+
+        assertEquals(before.length, after.length);
+        assertArrayEquals("index multiset changed", sorted(before), sorted(after));
+        assertArrayEquals("triangles or their winding changed", sortedTriangles(before), sortedTriangles(after));
+    }
+
+    @Test
+    public void vertexCacheLowersAcmr() {
+        int cacheSize = MeshOptimizer.SIMULATED_CACHE_SIZE;
+        float before = MeshOptimizer.computeAcmr(mesh.getIndices(), mesh.getVertexCount(), cacheSize);
+
+        MeshOptimizer.optimizeVertexCache(mesh.getIndices(), mesh.getVertexCount());
+        float after = MeshOptimizer.computeAcmr(mesh.getIndices(), mesh.getVertexCount(), cacheSize);
+
+        assertTrue("ACMR " + before + " -> " + after, after < before);
+        assertTrue("ACMR " + after + " is worse than 1 miss per triangle", after < 1.0f);
+    }
+
+    @Test
+    public void vertexFetchOnlyRenumbersVertices() {
+        MeshOptimizer.optimizeVertexCache(mesh.getIndices(), mesh.getVertexCount());
+        MeshData optimized = MeshOptimizer.optimizeVertexFetch(mesh);
+        try {
+            assertEquals(mesh.getIndexCount(), optimized.getIndexCount());
+            assertTrue(optimized.getVertexCount() <= mesh.getVertexCount());
+            for (int i = 0; i < mesh.getIndexCount(); i++) {
+                int oldVertex = mesh.getIndices().get(i);
+                int newVertex = optimized.getIndices().get(i);
+                for (int c = 0; c < 3; c++) {
+                    assertEquals(mesh.getPositions().get(oldVertex * 3 + c),
+                            optimized.getPositions().get(newVertex * 3 + c), 0.0f);
+                }
+            }
+        } finally {
+            optimized.free();
+        }
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        int[] array = new int[buffer.remaining()];
+        buffer.get(buffer.position(), array);
+        return array;
+    }
+
+    private static int[] sorted(int[] array) {
+        int[] copy = array.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    /** Each triangle rotated to start at its smallest index, so winding is kept, then sorted. */
+    private static long[] sortedTriangles(int[] indices) {
+        long[] triangles = new long[indices.length / 3];
+        for (int t = 0; t < triangles.length; t++) {
+            int a = indices[t * 3], b = indices[t * 3 + 1], c = indices[t * 3 + 2];
+            while (a > b || a > c) {
+                int first = a;
+                a = b;
+                b = c;
+                c = first;
+            }
+            triangles[t] = ((long) a << 42) | ((long) b << 21) | c;
+        }
+        Arrays.sort(triangles);
+        return triangles;
+    }
+}